@@ -0,0 +1,79 @@
+package zone.cogni.void_tool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Local SPARQL endpoint answering the VoID queries with canned XML results of a given number of classes and properties.
+ * The query text only decides which canned result is returned, nothing is evaluated, so paging and fan out are not supported.
+ */
+public class CannedSparqlEndpoint implements AutoCloseable {
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newFixedThreadPool(8);
+  private final byte[] classes;
+  private final byte[] properties;
+  private final byte[] classStatistics;
+  private final byte[] propertyStatistics;
+  private final byte[] examples;
+  private final byte[] total;
+
+  public CannedSparqlEndpoint(int partitions) throws IOException {
+    List<String> classUris = IntStream.range(0, partitions).mapToObj(row -> SparqlResultDocuments.uri("type", row)).collect(Collectors.toList());
+    List<String> propertyUris = IntStream.range(0, partitions).mapToObj(row -> SparqlResultDocuments.uri("property", row)).collect(Collectors.toList());
+
+    classes = SparqlResultDocuments.generateUris("xml", "result", classUris);
+    properties = SparqlResultDocuments.generateUris("xml", "result", propertyUris);
+    classStatistics = SparqlResultDocuments.generate("xml", "type", partitions);
+    propertyStatistics = SparqlResultDocuments.generate("xml", "property", partitions);
+    examples = SparqlResultDocuments.generateUris("xml", "example", classUris);
+    total = SparqlResultDocuments.generate("xml", null, 1);
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/sparql", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  public String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/sparql";
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String query = exchange.getRequestMethod().equals("POST") ? IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8)
+                                                              : URLDecoder.decode(exchange.getRequestURI().getRawQuery(), "UTF-8");
+    byte[] response = getResponse(query);
+
+    exchange.getResponseHeaders().set("Content-Type", "application/sparql-results+xml");
+    exchange.sendResponseHeaders(200, response.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(response);
+    }
+  }
+
+  private byte[] getResponse(String query) {
+    if (query.contains("?example")) return examples;
+    if (query.contains("?result")) return query.contains(" a ?result") ? classes : properties;
+    if (query.contains("GROUP BY ?type")) return classStatistics;
+    if (query.contains("GROUP BY ?property")) return propertyStatistics;
+    return total;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,56 @@
+package zone.cogni.void_tool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link VoidGenerator#get()} against a {@link CannedSparqlEndpoint}: all queries, result parsing and VoID assembly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+  @Param({"1000", "100000"})
+  public int partitions;
+
+  private CannedSparqlEndpoint endpoint;
+  private SparqlEndpointClient client;
+  private VoidSettings settings;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    endpoint = new CannedSparqlEndpoint(partitions);
+    settings = new VoidSettings().setDatasetUri("http://example.org/dataset")
+                                 .setSparqlEndpoint(endpoint.getUrl());
+    client = new SparqlEndpointClient(settings.getParallelism());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    client.close();
+    endpoint.close();
+  }
+
+  @Benchmark
+  public VoidModelBuilder generate() {
+    return new VoidGenerator(client, settings).get();
+  }
+}
@@ -0,0 +1,65 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.rdf.model.RDFNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses generated SPARQL results of the grouped 4.5 query shape into a {@link QueryResult}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResultParserBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int rows;
+
+  @Param({"xml", "json", "tsv"})
+  public String format;
+
+  private byte[] document;
+  private SparqlResultParser parser;
+
+  @Setup
+  public void setup() {
+    document = SparqlResultDocuments.generate(format, "type", rows);
+    parser = SparqlResultParser.forContentType(SparqlResultDocuments.getContentType(format));
+  }
+
+  @Benchmark
+  public QueryResult parse() throws IOException {
+    QueryResult queryResult = new QueryResult(Collections.emptyList());
+    parser.parse(new ByteArrayInputStream(document), new QueryResultHandler() {
+      @Override
+      public void variables(Set<String> variables) {
+        queryResult.addVariables(variables);
+      }
+
+      @Override
+      public void row(Map<String, RDFNode> row) {
+        queryResult.add(row);
+      }
+    });
+    return queryResult;
+  }
+}
@@ -0,0 +1,106 @@
+package zone.cogni.void_tool;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Generates SPARQL result documents with a uri and a count per row, like the results of the grouped 4.5 queries.
+ */
+public final class SparqlResultDocuments {
+
+  private static final String integer = "http://www.w3.org/2001/XMLSchema#integer";
+
+  private SparqlResultDocuments() {
+  }
+
+  public static String getContentType(String format) {
+    switch (format) {
+      case "json":
+        return "application/sparql-results+json";
+      case "tsv":
+        return "text/tab-separated-values";
+      default:
+        return "application/sparql-results+xml";
+    }
+  }
+
+  public static String uri(String variable, int row) {
+    return "http://example.org/ontology/" + variable + "/Term" + row;
+  }
+
+  /**
+   * @param uriVariable variable bound to a generated uri per row, null for rows with only ?total
+   */
+  public static byte[] generate(String format, String uriVariable, int rows) {
+    StringBuilder document = new StringBuilder(rows * 160);
+    switch (format) {
+      case "json":
+        appendJson(document, uriVariable, rows);
+        break;
+      case "tsv":
+        appendTsv(document, uriVariable, rows);
+        break;
+      default:
+        appendXml(document, uriVariable, rows);
+    }
+    return document.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return document with one uri per row bound to the variable
+   */
+  public static byte[] generateUris(String format, String variable, List<String> uris) {
+    StringBuilder document = new StringBuilder(uris.size() * 100);
+    if (format.equals("xml")) {
+      document.append("<?xml version=\"1.0\"?>\n<sparql xmlns=\"http://www.w3.org/2005/sparql-results#\">\n")
+              .append("<head><variable name=\"").append(variable).append("\"/></head>\n<results>\n");
+      uris.forEach(uri -> document.append("<result><binding name=\"").append(variable).append("\"><uri>").append(uri).append("</uri></binding></result>\n"));
+      document.append("</results>\n</sparql>\n");
+    }
+    else {
+      throw new IllegalArgumentException("Only xml is supported for uri documents.");
+    }
+    return document.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void appendXml(StringBuilder document, String uriVariable, int rows) {
+    document.append("<?xml version=\"1.0\"?>\n<sparql xmlns=\"http://www.w3.org/2005/sparql-results#\">\n<head>");
+    document.append("<variable name=\"total\"/>");
+    if (uriVariable != null) document.append("<variable name=\"").append(uriVariable).append("\"/>");
+    document.append("</head>\n<results>\n");
+    for (int row = 0; row < rows; row++) {
+      document.append("<result><binding name=\"total\"><literal datatype=\"").append(integer).append("\">").append(row + 1).append("</literal></binding>");
+      if (uriVariable != null) {
+        document.append("<binding name=\"").append(uriVariable).append("\"><uri>").append(uri(uriVariable, row)).append("</uri></binding>");
+      }
+      document.append("</result>\n");
+    }
+    document.append("</results>\n</sparql>\n");
+  }
+
+  private static void appendJson(StringBuilder document, String uriVariable, int rows) {
+    document.append("{\"head\":{\"vars\":[\"total\"");
+    if (uriVariable != null) document.append(",\"").append(uriVariable).append("\"");
+    document.append("]},\"results\":{\"bindings\":[\n");
+    for (int row = 0; row < rows; row++) {
+      if (row > 0) document.append(",\n");
+      document.append("{\"total\":{\"type\":\"literal\",\"datatype\":\"").append(integer).append("\",\"value\":\"").append(row + 1).append("\"}");
+      if (uriVariable != null) {
+        document.append(",\"").append(uriVariable).append("\":{\"type\":\"uri\",\"value\":\"").append(uri(uriVariable, row)).append("\"}");
+      }
+      document.append("}");
+    }
+    document.append("]}}\n");
+  }
+
+  private static void appendTsv(StringBuilder document, String uriVariable, int rows) {
+    document.append("?total");
+    if (uriVariable != null) document.append("\t?").append(uriVariable);
+    document.append("\n");
+    for (int row = 0; row < rows; row++) {
+      document.append("\"").append(row + 1).append("\"^^<").append(integer).append(">");
+      if (uriVariable != null) document.append("\t<").append(uri(uriVariable, row)).append(">");
+      document.append("\n");
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall clock time of a complete run on a two triple dump, in a new JVM: mostly startup.
+ * Compares the Spring Boot entry point, {@link FastMain}, and FastMain with an AppCDS archive made by a training run.
+ * Starts build/fast/void-fast.jar with the JDK of -Dvoid.java, ./gradlew jmh -Pcds.java=<java home>,
+ * which must be JDK 11 or later for the AppCDS variant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+
+  @Param({"spring", "fast", "fastCds"})
+  public String entry;
+
+  private File directory;
+  private List<String> command;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, InterruptedException {
+    File jar = new File(System.getProperty("void.fastJar", "build/fast/void-fast.jar"));
+    if (!jar.isFile()) throw new IllegalStateException("No " + jar + ", run ./gradlew fastJar first.");
+
+    directory = Files.createTempDirectory("void-startup").toFile();
+    File input = new File(directory, "input.ttl");
+    FileUtils.write(input, "<http://example.org/a> a <http://example.org/C> ; <http://example.org/p> \"x\" .\n", StandardCharsets.UTF_8);
+    List<String> arguments = Arrays.asList("--datasetUri", "http://example.org/dataset", "--input", input.getPath(),
+                                           "--file", new File(directory, "void.ttl").getPath());
+
+    String javaHome = System.getProperty("void.java");
+    if (javaHome == null && entry.equals("fastCds")) throw new IllegalStateException("No -Dvoid.java, the AppCDS variant needs a JDK 11 or later.");
+    String java = (javaHome == null ? System.getProperty("java.home") : javaHome) + "/bin/java";
+    boolean java8 = javaHome == null && System.getProperty("java.specification.version").startsWith("1.");
+    File archive = new File(directory, "void.jsa");
+    File classList = new File(directory, "void.classlist");
+    if (entry.equals("fastCds")) {
+      run(concat(Arrays.asList(java, "-Xshare:off", "-XX:DumpLoadedClassList=" + classList, "-jar", jar.getPath()), arguments));
+      run(Arrays.asList(java, "-Xshare:dump", "-XX:SharedClassListFile=" + classList, "-XX:SharedArchiveFile=" + archive,
+                        "-cp", jar.getPath()));
+    }
+
+    List<String> jvm = new ArrayList<>(Arrays.asList(java, "-cp", jar.getPath()));
+    if (entry.equals("spring") && !java8) jvm.add(1, "--add-opens=java.base/java.lang=ALL-UNNAMED");
+    if (entry.equals("fastCds")) jvm.add(1, "-XX:SharedArchiveFile=" + archive);
+    jvm.add(entry.equals("spring") ? Main.class.getName() : FastMain.class.getName());
+    command = concat(jvm, arguments);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Benchmark
+  public int start() throws IOException, InterruptedException {
+    return run(command);
+  }
+
+  private int run(List<String> command) throws IOException, InterruptedException {
+    Process process = new ProcessBuilder(command)
+            .directory(directory)
+            .redirectErrorStream(true)
+            .redirectOutput(new File(directory, "output.log"))
+            .start();
+    int exitCode = process.waitFor();
+    if (exitCode != 0) throw new IllegalStateException("Exit code " + exitCode + " for " + command + ", see " + directory + "/output.log.");
+    return exitCode;
+  }
+
+  private static List<String> concat(List<String> first, List<String> second) {
+    List<String> result = new ArrayList<>(first);
+    result.addAll(second);
+    return result;
+  }
+}
@@ -0,0 +1,56 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills a {@link VoidModelBuilder} with class and property partitions and writes the VoID as Turtle blocks to nowhere.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VoidAssemblyBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int partitions;
+
+  private final VoidSettings settings = new VoidSettings().setDatasetUri("http://example.org/dataset");
+
+  @Benchmark
+  public VoidModelBuilder assemble() {
+    VoidModelBuilder voidModelBuilder = new VoidModelBuilder(settings);
+    PartitionStatistics.voidProperties.forEach(voidProperty -> {
+      voidModelBuilder.addDatasetStatistic(voidProperty, partitions);
+      for (int partition = 0; partition < partitions; partition++) {
+        voidModelBuilder.addClassStatistic(SparqlResultDocuments.uri("type", partition), voidProperty, partition);
+        voidModelBuilder.addPropertyStatistic(SparqlResultDocuments.uri("property", partition), voidProperty, partition);
+      }
+    });
+    return voidModelBuilder;
+  }
+
+  @Benchmark
+  public void assembleAndWrite() {
+    StreamRDF output = StreamRDFWriter.getWriterStream(new NullOutputStream(), RDFFormat.TURTLE_BLOCKS);
+    output.start();
+    assemble().write(output);
+    output.finish();
+  }
+}
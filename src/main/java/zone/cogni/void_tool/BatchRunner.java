@@ -0,0 +1,243 @@
+package zone.cogni.void_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Generates VoID for all datasets of a batch file in one JVM.
+ * <p>
+ * Datasets run at the same time up to a global limit, and datasets on the same endpoint up to a per endpoint limit.
+ * Datasets read from dump files only count towards the global limit.
+ * All queries go through one client, which also limits the queries running at the same time on one endpoint.
+ * <pre>
+ * concurrency: 4            # datasets generated at the same time
+ * endpointConcurrency: 1    # datasets generated at the same time on one endpoint
+ * endpointQueries: 4        # queries running at the same time on one endpoint, over all its datasets
+ * defaults:                 # options of all datasets, the command line options without dashes
+ *   pageSize: 1000
+ * datasets:
+ *   - datasetUri: http://data.kbodata.be/dataset/kbo#id
+ *     sparqlEndpoint: http://data.kbodata.be/sparql
+ *     uriSpace: http://data.kbodata.be
+ *     file: kbo.ttl
+ * </pre>
+ */
+public class BatchRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(BatchRunner.class);
+
+  private int concurrency = 4;
+  private int endpointConcurrency = 1;
+  private int endpointQueries = 4;
+  private final List<VoidSettings> datasets = new ArrayList<>();
+
+  /**
+   * @param defaultArguments command line options applied to all datasets, before the options of the batch file
+   * @throws IllegalArgumentException with a message per invalid dataset
+   */
+  @SuppressWarnings("unchecked")
+  public BatchRunner(File batchFile, List<String> defaultArguments) throws IOException {
+    Map<String, Object> batch;
+    try (InputStream input = Files.newInputStream(batchFile.toPath())) {
+      batch = (Map<String, Object>) new Yaml().load(input);
+    }
+    if (batch == null) batch = Collections.emptyMap();
+
+    concurrency = getInt(batch, "concurrency", concurrency);
+    endpointConcurrency = getInt(batch, "endpointConcurrency", endpointConcurrency);
+    endpointQueries = getInt(batch, "endpointQueries", endpointQueries);
+    Map<String, Object> defaults = (Map<String, Object>) batch.getOrDefault("defaults", Collections.emptyMap());
+    List<Map<String, Object>> datasetOptions = (List<Map<String, Object>>) batch.getOrDefault("datasets", Collections.emptyList());
+
+    List<String> invalidParameters = new ArrayList<>();
+    if (concurrency < 1 || endpointConcurrency < 1 || endpointQueries < 1) {
+      invalidParameters.add("concurrency, endpointConcurrency and endpointQueries must be at least 1.");
+    }
+    if (datasetOptions.isEmpty()) invalidParameters.add("no datasets in batch file '" + batchFile + "'.");
+
+    Map<String, Integer> files = new HashMap<>();
+    for (int i = 0; i < datasetOptions.size(); i++) {
+      String name = "dataset " + (i + 1);
+      try {
+        VoidSettings settings = getSettings(defaultArguments, defaults, datasetOptions.get(i));
+        Main.getInvalidParameters(settings).forEach(invalid -> invalidParameters.add(name + ": " + invalid));
+
+        Integer previous = files.put(settings.getFile(), i + 1);
+        if (previous != null) invalidParameters.add(name + ": writes to the same --file as dataset " + previous + ".");
+        datasets.add(settings);
+      }
+      catch (IllegalArgumentException e) {
+        invalidParameters.add(name + ": " + e.getMessage());
+      }
+    }
+
+    if (!invalidParameters.isEmpty()) throw new IllegalArgumentException(String.join("\n", invalidParameters));
+  }
+
+  private static int getInt(Map<String, Object> batch, String key, int defaultValue) {
+    Object value = batch.get(key);
+    return value == null ? defaultValue : Integer.parseInt(String.valueOf(value));
+  }
+
+  private static VoidSettings getSettings(List<String> defaultArguments, Map<String, Object> defaults, Map<String, Object> options) {
+    VoidSettings settings = new VoidSettings();
+    for (int i = 0; i < defaultArguments.size() - 1; i += 2) {
+      Main.setArgument(settings, defaultArguments.get(i), defaultArguments.get(i + 1));
+    }
+    defaults.forEach((option, value) -> Main.setArgument(settings, "--" + option, String.valueOf(value)));
+    options.forEach((option, value) -> Main.setArgument(settings, "--" + option, String.valueOf(value)));
+    return settings;
+  }
+
+  /**
+   * @return results in the order of the batch file
+   */
+  public List<DatasetResult> run() throws IOException {
+    int maxConnections = concurrency * datasets.stream().mapToInt(VoidSettings::getParallelism).max().orElse(1);
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    try (SparqlEndpointClient client = new SparqlEndpointClient(maxConnections, endpointQueries)) {
+      Map<String, EndpointQueue> endpointQueues = new HashMap<>();
+      List<CompletableFuture<DatasetResult>> results = new ArrayList<>();
+      for (VoidSettings settings : datasets) {
+        CompletableFuture<DatasetResult> result = new CompletableFuture<>();
+        results.add(result);
+        endpointQueues.computeIfAbsent(getEndpoint(settings), key -> new EndpointQueue())
+                      .add(() -> {
+                        try {
+                          result.complete(run(client, settings));
+                        }
+                        catch (Throwable e) {
+                          result.completeExceptionally(e);
+                        }
+                      }, executor);
+      }
+      return results.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Dump datasets use no endpoint, each gets its own key so only the global limit applies to them.
+   * Their --file is unique within the batch.
+   */
+  private static String getEndpoint(VoidSettings settings) {
+    return !settings.getInput().isEmpty() ? "input:" + settings.getFile()
+           : settings.getTdb2() != null ? "tdb2:" + settings.getTdb2() : settings.getSparqlEndpoint();
+  }
+
+  private DatasetResult run(SparqlEndpointClient client, VoidSettings settings) {
+    long start = System.currentTimeMillis();
+    try {
+      log.info("Generating VoID for '{}'.", settings.getDatasetUri());
+      VoidModelBuilder voidModelBuilder;
+      RunReport report = null;
+      if (settings.getInput().isEmpty()) {
+        VoidGenerator voidGenerator = new VoidGenerator(client, settings);
+        voidModelBuilder = voidGenerator.get();
+        report = voidGenerator.getRunReport();
+        report.write(RunReport.getReportFile(settings.getFile()), settings);
+      }
+      else {
+        voidModelBuilder = new DumpVoidGenerator(settings).get();
+      }
+
+      long triples = new VoidWriter(settings).write(voidModelBuilder);
+      log.info("{} triples written to file '{}'.", triples, settings.getFile());
+      int failedQueries = report == null ? 0 : (int) report.getQueries().stream().filter(query -> !query.isSuccess()).count();
+      return new DatasetResult(settings, System.currentTimeMillis() - start, triples, failedQueries, null);
+    }
+    catch (Exception e) {
+      log.error("Generating VoID for '{}' failed.", settings.getDatasetUri(), e);
+      return new DatasetResult(settings, System.currentTimeMillis() - start, 0, 0, e.getClass().getSimpleName() + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Hands the datasets of one endpoint to the pool only while fewer than endpointConcurrency of them run,
+   * so waiting datasets never hold a worker that a dataset on another endpoint could use.
+   */
+  private class EndpointQueue {
+
+    private final Queue<Runnable> waiting = new ArrayDeque<>();
+    private int running;
+
+    private synchronized void add(Runnable dataset, Executor executor) {
+      if (running < endpointConcurrency) start(dataset, executor);
+      else waiting.add(dataset);
+    }
+
+    private void start(Runnable dataset, Executor executor) {
+      running++;
+      executor.execute(() -> {
+        try {
+          dataset.run();
+        }
+        finally {
+          finished(executor);
+        }
+      });
+    }
+
+    private synchronized void finished(Executor executor) {
+      running--;
+      Runnable next = waiting.poll();
+      if (next != null) start(next, executor);
+    }
+  }
+
+  public static void printSummary(List<DatasetResult> results, PrintStream output) {
+    output.println(String.format("%-50s %-40s %8s %10s %10s %8s  %s",
+                                 "Dataset", "File", "Outcome", "Time ms", "Triples", "Failed q", "Failure"));
+    results.forEach(result -> output.println(String.format("%-50s %-40s %8s %10d %10d %8d  %s",
+                                                           result.settings.getDatasetUri(), result.settings.getFile(),
+                                                           !result.isSuccess() ? "failed" : result.failedQueries > 0 ? "partial" : "ok",
+                                                           result.millis, result.triples, result.failedQueries,
+                                                           result.failure == null ? "" : result.failure)));
+
+    long failed = results.stream().filter(result -> !result.isSuccess()).count();
+    long partial = results.stream().filter(result -> result.isSuccess() && result.failedQueries > 0).count();
+    output.println(results.size() + " datasets, " + failed + " failed, " + partial + " with failed queries.");
+  }
+
+  public static class DatasetResult {
+
+    private final VoidSettings settings;
+    private final long millis;
+    private final long triples;
+    private final int failedQueries;
+    private final String failure;
+
+    private DatasetResult(VoidSettings settings, long millis, long triples, int failedQueries, String failure) {
+      this.settings = settings;
+      this.millis = millis;
+      this.triples = triples;
+      this.failedQueries = failedQueries;
+      this.failure = failure;
+    }
+
+    public boolean isSuccess() {
+      return failure == null;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes the same statistics as the SPARQL queries in a single pass over a stream of triples or quads.
+ * Quads are counted as triples of one dataset, graphs are not taken into account.
+ */
+public abstract class DumpStatistics implements StreamRDF, Closeable {
+
+  public static DumpStatistics create(VoidSettings settings) {
+    return settings.isApproximate() ? new SketchDumpStatistics(settings.getUriSpace(), settings.getPrecision())
+                                    : new ExactDumpStatistics(settings.getUriSpace());
+  }
+
+  private final String uriSpace;
+  private final Map<Node, Node> exampleResources = new HashMap<>();
+
+  protected long triples;
+
+  protected DumpStatistics(String uriSpace) {
+    this.uriSpace = uriSpace;
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void quad(Quad quad) {
+    triple(quad.asTriple());
+  }
+
+  @Override
+  public void base(String base) {
+  }
+
+  @Override
+  public void prefix(String prefix, String iri) {
+  }
+
+  @Override
+  public void finish() {
+  }
+
+  /**
+   * @return the node as a string that identifies it among all nodes of the dump
+   */
+  static String key(Node node) {
+    if (node.isURI()) return node.getURI();
+    if (node.isBlank()) return "_:" + node.getBlankNodeLabel();
+    return "\"" + node.toString();
+  }
+
+  static boolean isUriKey(String key) {
+    return !key.startsWith("_:") && !key.startsWith("\"");
+  }
+
+  public long getTriples() {
+    return triples;
+  }
+
+  protected void addExampleResource(Node type, Node subject) {
+    if (subject.isURI() && subject.getURI().startsWith(uriSpace)) exampleResources.putIfAbsent(type, subject);
+  }
+
+  public void fill(VoidModelBuilder voidModelBuilder) {
+    exampleResources.values().forEach(example -> voidModelBuilder.addExampleResource(example.getURI())); // 4.1
+    addVocabularies(voidModelBuilder); // 4.3
+    addDatasetStatistics(voidModelBuilder); // 4.6
+    addPartitionStatistics(voidModelBuilder); // 4.5
+  }
+
+  /**
+   * @return the statistics of the triples read, as one shard of the dump to be merged with the other shards
+   */
+  public PartialStatistics toPartial(int shard, int shards) {
+    PartialStatistics partial = createPartial(shard, shards);
+    exampleResources.forEach((type, example) -> partial.addExampleResource(key(type), example.getURI()));
+    return partial;
+  }
+
+  protected abstract PartialStatistics createPartial(int shard, int shards);
+
+  protected abstract void addVocabularies(VoidModelBuilder voidModelBuilder);
+
+  protected abstract void addDatasetStatistics(VoidModelBuilder voidModelBuilder);
+
+  /**
+   * Like the grouped queries, a partition without non literal objects or typed subjects gets no statistic for them.
+   */
+  protected abstract void addPartitionStatistics(VoidModelBuilder voidModelBuilder);
+
+  /**
+   * Releases temporary storage, if any.
+   */
+  @Override
+  public void close() {
+  }
+
+}
@@ -0,0 +1,128 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Generates VoID for dump files instead of a SPARQL endpoint.
+ * Files are streamed one after the other, optionally gzip or bzip2 compressed.
+ * <p>
+ * With --shard i/n only the triples of subjects hashing to shard i are counted, and written as {@link PartialStatistics}.
+ * Blank node labels are scoped by file name instead of per run, so all workers agree on the shard of a blank node subject.
+ */
+public class DumpVoidGenerator implements Supplier<VoidModelBuilder> {
+
+  private static final Logger log = LoggerFactory.getLogger(DumpVoidGenerator.class);
+
+  static InputStream open(String file) throws IOException {
+    InputStream input = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+    if (file.endsWith(".gz")) return new GZIPInputStream(input, 1 << 16);
+    if (file.endsWith(".bz2")) return new BZip2CompressorInputStream(input, true);
+    return input;
+  }
+
+  static Lang getLang(String file) {
+    String uncompressed = StringUtils.removeEnd(StringUtils.removeEnd(file, ".gz"), ".bz2");
+    Lang lang = RDFLanguages.filenameToLang(uncompressed);
+    if (lang == null) throw new IllegalArgumentException("Cannot determine RDF syntax of file '" + file + "'.");
+    return lang;
+  }
+
+  private final VoidSettings settings;
+
+  public DumpVoidGenerator(VoidSettings settings) {
+    this.settings = settings;
+  }
+
+  @Override public VoidModelBuilder get() {
+    try (DumpStatistics statistics = DumpStatistics.create(settings)) {
+      settings.getInput().forEach(file -> parse(file, statistics, statistics));
+
+      VoidModelBuilder voidModelBuilder = new VoidModelBuilder(settings);
+      statistics.fill(voidModelBuilder);
+      return voidModelBuilder;
+    }
+  }
+
+  /**
+   * Counts the shard given by --shard and writes its partial statistics to the file.
+   */
+  public void writeShard(File file) {
+    try (DumpStatistics statistics = DumpStatistics.create(settings)) {
+      StreamRDF shard = new ShardFilter(statistics, settings.getShardIndex(), settings.getShardCount());
+      settings.getInput().forEach(input -> parse(input, shard, statistics));
+
+      statistics.toPartial(settings.getShardIndex(), settings.getShardCount()).write(file);
+    }
+  }
+
+  private void parse(String file, StreamRDF destination, DumpStatistics statistics) {
+    long start = currentTimeMillis();
+    long triplesBefore = statistics.getTriples();
+
+    try (InputStream input = open(file)) {
+      RDFParser.create()
+               .source(input)
+               .lang(getLang(file))
+               .labelToNode(LabelToNode.createScopeByDocumentHash(UUID.nameUUIDFromBytes(file.getBytes(StandardCharsets.UTF_8))))
+               .parse(destination);
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Failed to read file '" + file + "'.", e);
+    }
+
+    log.info("Read {} triples from '{}' in {}s.", statistics.getTriples() - triplesBefore, file, (currentTimeMillis() - start) / 1000);
+  }
+
+  /**
+   * Passes the triples of the subjects of one shard, all triples of a subject go to the same shard.
+   */
+  private static class ShardFilter extends StreamRDFWrapper {
+
+    private final int index;
+    private final int count;
+
+    private ShardFilter(StreamRDF statistics, int index, int count) {
+      super(statistics);
+      this.index = index;
+      this.count = count;
+    }
+
+    @Override
+    public void triple(Triple triple) {
+      if (isInShard(triple.getSubject())) other.triple(triple);
+    }
+
+    @Override
+    public void quad(Quad quad) {
+      if (isInShard(quad.getSubject())) other.quad(quad);
+    }
+
+    private boolean isInShard(Node subject) {
+      return Long.remainderUnsigned(HyperLogLog.hash(DumpStatistics.key(subject)), count) == index - 1;
+    }
+  }
+}
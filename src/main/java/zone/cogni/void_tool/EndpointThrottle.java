@@ -0,0 +1,86 @@
+package zone.cogni.void_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker and adaptive concurrency limit for one endpoint.
+ * <p>
+ * When a query fails in a way that points to an overloaded store, the number of queries allowed at the same time is halved.
+ * Once only one query is allowed, a next such failure opens the circuit: during a cool down no query is sent.
+ * After the cool down a single query probes the endpoint, a next failure opens the circuit again.
+ * Waiting out a cool down does not count as a retry of the waiting queries.
+ * Every time as many queries succeeded as are allowed, one more is allowed, up to the maximum.
+ */
+public class EndpointThrottle {
+
+  private static final Logger log = LoggerFactory.getLogger(EndpointThrottle.class);
+
+  private static final long coolDownMillis = 5_000;
+
+  private final String endpoint;
+  private final int maxLimit;
+
+  private int limit;
+  private int running;
+  private int successes;
+  private long openUntil;
+
+  public EndpointThrottle(String endpoint, int maxLimit) {
+    this.endpoint = endpoint;
+    this.maxLimit = maxLimit;
+    this.limit = maxLimit;
+  }
+
+  /**
+   * Waits until the circuit is closed and fewer queries run than allowed.
+   * The circuit only opens when one query is allowed, so after the cool down the first query to get a place is the probe.
+   */
+  public synchronized void acquire() throws InterruptedException {
+    while (true) {
+      long open = openUntil - System.currentTimeMillis();
+      if (open > 0) wait(open);
+      else if (running >= limit) wait();
+      else break;
+    }
+
+    running++;
+  }
+
+  /**
+   * Releases the place of a query that failed in a way that says nothing about the load of the endpoint.
+   */
+  public synchronized void release() {
+    running--;
+    notifyAll();
+  }
+
+  /**
+   * @param overloaded true if the query failed with a timeout or server error, false if it succeeded
+   */
+  public synchronized void release(boolean overloaded) {
+    running--;
+
+    if (overloaded && limit > 1) {
+      limit /= 2;
+      successes = 0;
+      log.warn("Endpoint '{}' is struggling, allowing {} queries at the same time.", endpoint, limit);
+    }
+    else if (overloaded) {
+      successes = 0;
+      openUntil = System.currentTimeMillis() + coolDownMillis;
+      log.warn("Endpoint '{}' is struggling, refusing queries for {}s.", endpoint, coolDownMillis / 1000);
+    }
+    else if (limit < maxLimit && ++successes >= limit) {
+      limit++;
+      successes = 0;
+      log.info("Allowing {} queries at the same time on endpoint '{}'.", limit, endpoint);
+    }
+
+    notifyAll();
+  }
+
+  public synchronized int getLimit() {
+    return limit;
+  }
+}
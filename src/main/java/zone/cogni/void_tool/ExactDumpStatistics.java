@@ -0,0 +1,248 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.vocabulary.RDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Exact statistics whatever the order of the triples.
+ * <p>
+ * Subjects and non literal objects are encoded to ids by a memory mapped {@link NodeDictionary}.
+ * Per subject id its triple count and types are kept in mapped arrays, as is the log of subject / non literal object pairs,
+ * so class partitions can be resolved at the end without holding the dump on the heap.
+ * Distinct sets per partition are {@link IdBitmap}s of those ids.
+ */
+public class ExactDumpStatistics extends DumpStatistics {
+
+  private static final Logger log = LoggerFactory.getLogger(ExactDumpStatistics.class);
+
+  private final Path directory;
+  private final NodeDictionary dictionary;
+  private final MappedLongArray subjectTriples;
+  private final MappedLongArray subjectTypes; // first type entry + 1 per subject id
+  private final MappedLongArray typeEntries; // pairs of type id and next type entry + 1
+  private final MappedLongArray subjectObjects; // pairs of subject id and object id
+  private long typeEntryCount;
+  private long subjectObjectCount;
+  private long entities;
+
+  private final IdBitmap subjects = new IdBitmap();
+  private final IdBitmap objects = new IdBitmap();
+  private final Map<Long, Node> types = new HashMap<>();
+  private final Map<Node, PropertyData> propertyData = new HashMap<>();
+  private Map<Long, ClassData> classData;
+
+  public ExactDumpStatistics(String uriSpace) {
+    super(uriSpace);
+    try {
+      directory = Files.createTempDirectory("void");
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    dictionary = new NodeDictionary(directory);
+    subjectTriples = new MappedLongArray(directory, "subjectTriples");
+    subjectTypes = new MappedLongArray(directory, "subjectTypes");
+    typeEntries = new MappedLongArray(directory, "typeEntries");
+    subjectObjects = new MappedLongArray(directory, "subjectObjects");
+  }
+
+  @Override
+  public void triple(Triple triple) {
+    Node predicate = triple.getPredicate();
+    Node object = triple.getObject();
+    long subject = dictionary.encode(key(triple.getSubject()));
+
+    triples++;
+    subjects.add(subject);
+    subjectTriples.add(subject, 1);
+
+    PropertyData property = propertyData.computeIfAbsent(predicate, key -> new PropertyData());
+    property.triples++;
+    property.subjects.add(subject);
+
+    if (!object.isLiteral()) {
+      long objectId = dictionary.encode(key(object));
+      objects.add(objectId);
+      property.objects.add(objectId);
+      subjectObjects.set(2 * subjectObjectCount, subject);
+      subjectObjects.set(2 * subjectObjectCount + 1, objectId);
+      subjectObjectCount++;
+    }
+
+    if (predicate.equals(RDF.type.asNode())) {
+      long type = dictionary.encode(key(object));
+      types.putIfAbsent(type, object);
+      addType(subject, type);
+      addExampleResource(object, triple.getSubject());
+    }
+  }
+
+  private void addType(long subject, long type) {
+    long head = subjectTypes.get(subject);
+    for (long entry = head; entry != 0; entry = typeEntries.get(2 * (entry - 1) + 1)) {
+      if (typeEntries.get(2 * (entry - 1)) == type) return;
+    }
+
+    if (head == 0) entities++;
+    typeEntries.set(2 * typeEntryCount, type);
+    typeEntries.set(2 * typeEntryCount + 1, head);
+    typeEntryCount++;
+    subjectTypes.set(subject, typeEntryCount);
+  }
+
+  private void forEachType(long subject, LongConsumer consumer) {
+    for (long entry = subjectTypes.get(subject); entry != 0; entry = typeEntries.get(2 * (entry - 1) + 1)) {
+      consumer.accept(typeEntries.get(2 * (entry - 1)));
+    }
+  }
+
+  @Override
+  protected void addVocabularies(VoidModelBuilder voidModelBuilder) {
+    types.values().stream()
+            .filter(Node::isURI)
+            .forEach(type -> voidModelBuilder.addVocabularyTerm(type.getURI()));
+    propertyData.keySet().forEach(property -> voidModelBuilder.addVocabularyTerm(property.getURI()));
+  }
+
+  @Override
+  protected void addDatasetStatistics(VoidModelBuilder voidModelBuilder) {
+    voidModelBuilder.addDatasetStatistic("triples", triples);
+    voidModelBuilder.addDatasetStatistic("entities", entities);
+    voidModelBuilder.addDatasetStatistic("classes", types.size());
+    voidModelBuilder.addDatasetStatistic("properties", propertyData.size());
+    voidModelBuilder.addDatasetStatistic("distinctSubjects", subjects.cardinality());
+    voidModelBuilder.addDatasetStatistic("distinctObjects", objects.cardinality());
+  }
+
+  /**
+   * Resolves the class partitions and the entities and classes of the property partitions, once all triples are read.
+   */
+  private Map<Long, ClassData> getClassData() {
+    if (classData != null) return classData;
+
+    classData = new HashMap<>();
+    types.keySet().forEach(type -> classData.put(type, new ClassData()));
+
+    subjects.forEach(subject -> forEachType(subject, type -> {
+      ClassData data = classData.get(type);
+      data.triples += subjectTriples.get(subject);
+      data.entities++;
+    }));
+
+    for (long pair = 0; pair < subjectObjectCount; pair++) {
+      long object = subjectObjects.get(2 * pair + 1);
+      forEachType(subjectObjects.get(2 * pair), type -> classData.get(type).objects.add(object));
+    }
+
+    propertyData.forEach((property, data) -> data.subjects.forEach(subject -> {
+      if (subjectTypes.get(subject) == 0) return;
+
+      data.entities++;
+      forEachType(subject, type -> {
+        data.classes.add(type);
+        classData.get(type).properties.add(property);
+      });
+    }));
+    return classData;
+  }
+
+  @Override
+  protected void addPartitionStatistics(VoidModelBuilder voidModelBuilder) {
+    getClassData().forEach((typeId, data) -> {
+      Node type = types.get(typeId);
+      if (!type.isURI()) return;
+
+      String uri = type.getURI();
+      voidModelBuilder.addClassStatistic(uri, "triples", data.triples);
+      voidModelBuilder.addClassStatistic(uri, "entities", data.entities);
+      voidModelBuilder.addClassStatistic(uri, "classes", 1);
+      voidModelBuilder.addClassStatistic(uri, "properties", data.properties.size());
+      voidModelBuilder.addClassStatistic(uri, "distinctSubjects", data.entities);
+      if (!data.objects.isEmpty()) voidModelBuilder.addClassStatistic(uri, "distinctObjects", data.objects.cardinality());
+    });
+
+    propertyData.forEach((property, data) -> {
+      String uri = property.getURI();
+      voidModelBuilder.addPropertyStatistic(uri, "triples", data.triples);
+      if (data.entities > 0) voidModelBuilder.addPropertyStatistic(uri, "entities", data.entities);
+      if (!data.classes.isEmpty()) voidModelBuilder.addPropertyStatistic(uri, "classes", data.classes.size());
+      voidModelBuilder.addPropertyStatistic(uri, "properties", 1);
+      voidModelBuilder.addPropertyStatistic(uri, "distinctSubjects", data.subjects.cardinality());
+      if (!data.objects.isEmpty()) voidModelBuilder.addPropertyStatistic(uri, "distinctObjects", data.objects.cardinality());
+    });
+  }
+
+  @Override
+  protected PartialStatistics createPartial(int shard, int shards) {
+    PartialStatistics result = new PartialStatistics(shard, shards, 0);
+    result.getDataset().setCounts(triples, entities, subjects.cardinality())
+          .setObjectHashes(consumer -> forEachHash(objects, consumer));
+
+    getClassData().forEach((typeId, data) -> {
+      PartialStatistics.Partition partition = result.getClassPartition(key(types.get(typeId)))
+                                                    .setCounts(data.triples, data.entities, data.entities)
+                                                    .setObjectHashes(consumer -> forEachHash(data.objects, consumer));
+      data.properties.forEach(property -> partition.addTerm(property.getURI()));
+    });
+
+    propertyData.forEach((property, data) -> {
+      PartialStatistics.Partition partition = result.getPropertyPartition(property.getURI())
+                                                    .setCounts(data.triples, data.entities, data.subjects.cardinality())
+                                                    .setObjectHashes(consumer -> forEachHash(data.objects, consumer));
+      data.classes.forEach(type -> partition.addTerm(key(types.get(type))));
+    });
+    return result;
+  }
+
+  /**
+   * Ids are local to this run, other shards know the objects by the hash of their key.
+   */
+  private void forEachHash(IdBitmap ids, LongConsumer consumer) {
+    ids.forEach(id -> consumer.accept(HyperLogLog.hash(dictionary.decode(id))));
+  }
+
+  @Override
+  public void close() {
+    dictionary.close();
+    subjectTriples.close();
+    subjectTypes.close();
+    typeEntries.close();
+    subjectObjects.close();
+    try {
+      Files.deleteIfExists(directory);
+    }
+    catch (IOException e) {
+      // files still mapped are only deleted once their buffers are collected, the counts are complete anyway
+      log.warn("Could not delete temporary directory '{}'. {}", directory, e.toString());
+    }
+  }
+
+  private static class PropertyData {
+    private long triples;
+    private long entities;
+    private final IdBitmap subjects = new IdBitmap();
+    private final IdBitmap objects = new IdBitmap();
+    private final Set<Long> classes = new HashSet<>();
+  }
+
+  private static class ClassData {
+    private long triples;
+    private long entities;
+    private final Set<Node> properties = new HashSet<>();
+    private final IdBitmap objects = new IdBitmap();
+  }
+
+}
@@ -0,0 +1,110 @@
+package zone.cogni.void_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a GROUP BY query as many small queries, each bound to a batch of group values with VALUES.
+ * The group values are taken from an earlier query, the batches run in parallel on the scheduler.
+ */
+public class FanOutQuery {
+
+  private static final Logger log = LoggerFactory.getLogger(FanOutQuery.class);
+
+  /**
+   * Adds the VALUES block at the start of the WHERE group, which is the first group in the query templates.
+   */
+  static String getBoundSparql(String sparql, String groupVariable, List<String> uris) {
+    int whereStart = sparql.indexOf('{') + 1;
+    String values = uris.stream()
+            .map(uri -> "<" + uri + ">")
+            .collect(Collectors.joining(" ", "\n  VALUES ?" + groupVariable + " { ", " }\n"));
+    return sparql.substring(0, whereStart) + values + sparql.substring(whereStart);
+  }
+
+  private final QueryScheduler scheduler;
+  private final BiFunction<String, String, Optional<QueryResult>> runner;
+  private final String sparql;
+  private final String sparqlName;
+  private final String groupVariable;
+  private final int batchSize;
+
+  /**
+   * @param runner runs a query given its sparql and name
+   */
+  public FanOutQuery(QueryScheduler scheduler, BiFunction<String, String, Optional<QueryResult>> runner,
+                     String sparql, String sparqlName, String groupVariable, int batchSize) {
+    this.scheduler = scheduler;
+    this.runner = runner;
+    this.sparql = sparql;
+    this.sparqlName = sparqlName;
+    this.groupVariable = groupVariable;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * @param groupValues result with the uris to bind to the group variable, the original query runs when it failed
+   * @param valueVariable variable of the uris in groupValues
+   */
+  public CompletableFuture<Optional<QueryResult>> submit(CompletableFuture<Optional<QueryResult>> groupValues, String valueVariable) {
+    return groupValues.thenCompose(result -> {
+      if (!result.isPresent()) {
+        log.warn("No values to bind for '{}', running it as a single query.", sparqlName);
+        return scheduler.submit(() -> runner.apply(sparql, sparqlName));
+      }
+
+      List<String> uris = result.get().rows()
+              .map(row -> row.getUri(valueVariable))
+              .filter(Objects::nonNull)
+              .distinct()
+              .sorted()
+              .collect(Collectors.toList());
+
+      List<CompletableFuture<Optional<QueryResult>>> batches = new ArrayList<>();
+      for (int start = 0; start < uris.size(); start += batchSize) {
+        List<String> batch = uris.subList(start, Math.min(uris.size(), start + batchSize));
+        String batchName = sparqlName + " (" + (start + 1) + "-" + (start + batch.size()) + " of " + uris.size() + ")";
+        batches.add(scheduler.submit(() -> runner.apply(getBoundSparql(sparql, groupVariable, batch), batchName)));
+      }
+
+      return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]))
+              .thenApply(ignored -> merge(batches));
+    });
+  }
+
+  /**
+   * @return rows of all batches, empty if any batch failed: the partitions of a failed batch would be missing without notice
+   */
+  private Optional<QueryResult> merge(List<CompletableFuture<Optional<QueryResult>>> batches) {
+    QueryResult result = new QueryResult(Collections.emptyList());
+    int failed = 0;
+
+    for (CompletableFuture<Optional<QueryResult>> batch : batches) {
+      Optional<QueryResult> batchResult = batch.join();
+      if (!batchResult.isPresent()) {
+        failed++;
+        continue;
+      }
+
+      // an empty group can come back as a single row without the group variable
+      result.addVariables(batchResult.get().getVariables());
+      batchResult.get().rows()
+              .filter(row -> row.get(groupVariable) != null)
+              .forEach(result::add);
+    }
+
+    if (failed == 0) return Optional.of(result);
+
+    log.warn("{} of {} batches failed for '{}', dropping the rows of the others.", failed, batches.size(), sparqlName);
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,198 @@
+package zone.cogni.void_tool;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Mergeable HyperLogLog sketch for approximate distinct counts.
+ * <p>
+ * Small sets are kept as exact hashes, so counting stays exact and cheap for small partitions.
+ * Once they would take more memory than the 2^precision registers the sketch switches to registers,
+ * after which memory stays fixed whatever the number of distinct values.
+ */
+public class HyperLogLog {
+
+  public static final int minPrecision = 4;
+  public static final int maxPrecision = 18;
+
+  /**
+   * 64 bit FNV-1a hash followed by the murmur3 finalizer to spread the bits.
+   */
+  static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  public static double getStandardError(int precision) {
+    return 1.04 / Math.sqrt(1 << precision);
+  }
+
+  private final int precision;
+  private final int maxSparseSize;
+
+  private long[] sparse = new long[8];
+  private int sparseSize;
+  private boolean sparseHasZero;
+  private byte[] registers;
+
+  public HyperLogLog(int precision) {
+    if (precision < minPrecision || precision > maxPrecision) {
+      throw new IllegalArgumentException("Precision must be between " + minPrecision + " and " + maxPrecision + ", got " + precision + ".");
+    }
+
+    this.precision = precision;
+    this.maxSparseSize = (1 << precision) / 16;
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  public void add(String value) {
+    addHash(hash(value));
+  }
+
+  public void addHash(long hash) {
+    if (registers != null) {
+      addToRegisters(hash);
+      return;
+    }
+
+    addToSparse(hash);
+    if (sparseSize > maxSparseSize) toRegisters();
+  }
+
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) throw new IllegalArgumentException("Cannot merge sketches with precision " + precision + " and " + other.precision + ".");
+
+    if (other.registers == null) {
+      other.forEachSparseHash(this::addHash);
+      return;
+    }
+
+    if (registers == null) toRegisters();
+    for (int i = 0; i < registers.length; i++) {
+      registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+    }
+  }
+
+  /**
+   * Writes the sketch as it is, sparse hashes or registers, so a sketch read back counts and merges the same.
+   */
+  void write(DataOutput output) throws IOException {
+    output.writeByte(precision);
+    output.writeBoolean(registers != null);
+    if (registers != null) {
+      output.write(registers);
+      return;
+    }
+
+    output.writeInt(sparseSize + (sparseHasZero ? 1 : 0));
+    if (sparseHasZero) output.writeLong(0);
+    for (long hash : sparse) {
+      if (hash != 0) output.writeLong(hash);
+    }
+  }
+
+  static HyperLogLog read(DataInput input) throws IOException {
+    HyperLogLog result = new HyperLogLog(input.readByte());
+    if (input.readBoolean()) {
+      result.registers = new byte[1 << result.precision];
+      result.sparse = null;
+      input.readFully(result.registers);
+      return result;
+    }
+
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      result.addHash(input.readLong());
+    }
+    return result;
+  }
+
+  public long count() {
+    if (registers == null) return sparseSize + (sparseHasZero ? 1 : 0);
+
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) zeros++;
+    }
+
+    double estimate = getAlpha(m) * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) estimate = m * Math.log((double) m / zeros); // linear counting for small ranges
+    return Math.round(estimate);
+  }
+
+  private static double getAlpha(int m) {
+    if (m == 16) return 0.673;
+    if (m == 32) return 0.697;
+    if (m == 64) return 0.709;
+    return 0.7213 / (1 + 1.079 / m);
+  }
+
+  private void addToRegisters(long hash) {
+    int index = (int) (hash >>> (64 - precision));
+    long remaining = (hash << precision) | (1L << (precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+    if (rank > registers[index]) registers[index] = rank;
+  }
+
+  private void toRegisters() {
+    registers = new byte[1 << precision];
+    forEachSparseHash(this::addToRegisters);
+    sparse = null;
+  }
+
+  // open addressing set of hashes, 0 marks an empty slot and is tracked separately
+
+  private void addToSparse(long hash) {
+    if (hash == 0) {
+      sparseHasZero = true;
+      return;
+    }
+
+    if ((sparseSize + 1) * 2 > sparse.length) {
+      long[] old = sparse;
+      sparse = new long[old.length * 2];
+      sparseSize = 0;
+      for (long value : old) {
+        if (value != 0) insertSparse(value);
+      }
+    }
+
+    insertSparse(hash);
+  }
+
+  private void insertSparse(long hash) {
+    int mask = sparse.length - 1;
+    int slot = (int) (hash ^ (hash >>> 32)) & mask;
+    while (sparse[slot] != 0) {
+      if (sparse[slot] == hash) return;
+      slot = (slot + 1) & mask;
+    }
+
+    sparse[slot] = hash;
+    sparseSize++;
+  }
+
+  private void forEachSparseHash(LongConsumer consumer) {
+    if (sparseHasZero) consumer.accept(0);
+    Arrays.stream(sparse).filter(value -> value != 0).forEach(consumer);
+  }
+}
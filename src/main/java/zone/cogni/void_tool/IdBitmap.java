@@ -0,0 +1,113 @@
+package zone.cogni.void_tool;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Compressed set of long ids in the style of a roaring bitmap.
+ * Ids are split in chunks of 65536, a chunk holds a sorted array while sparse and a plain bitmap once dense.
+ */
+public class IdBitmap {
+
+  private static final int maxArraySize = 4096;
+
+  private final Map<Long, Chunk> chunks = new HashMap<>();
+  private long cardinality;
+
+  public void add(long id) {
+    Chunk chunk = chunks.get(id >>> 16);
+    if (chunk == null) {
+      chunk = new ArrayChunk();
+      chunks.put(id >>> 16, chunk);
+    }
+
+    char low = (char) id;
+    if (!chunk.add(low)) return;
+
+    cardinality++;
+    if (chunk instanceof ArrayChunk && ((ArrayChunk) chunk).size > maxArraySize) {
+      chunks.put(id >>> 16, ((ArrayChunk) chunk).toBitmap());
+    }
+  }
+
+  public long cardinality() {
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  public void forEach(LongConsumer consumer) {
+    chunks.forEach((high, chunk) -> chunk.forEach(low -> consumer.accept((high << 16) | low)));
+  }
+
+  private interface Chunk {
+
+    boolean add(char low);
+
+    void forEach(LongConsumer consumer);
+  }
+
+  private static class ArrayChunk implements Chunk {
+
+    private char[] values = new char[4];
+    private int size;
+
+    @Override
+    public boolean add(char low) {
+      int index = Arrays.binarySearch(values, 0, size, low);
+      if (index >= 0) return false;
+
+      int insert = -index - 1;
+      if (size == values.length) values = Arrays.copyOf(values, size * 2);
+      System.arraycopy(values, insert, values, insert + 1, size - insert);
+      values[insert] = low;
+      size++;
+      return true;
+    }
+
+    @Override
+    public void forEach(LongConsumer consumer) {
+      for (int i = 0; i < size; i++) {
+        consumer.accept(values[i]);
+      }
+    }
+
+    private BitmapChunk toBitmap() {
+      BitmapChunk bitmap = new BitmapChunk();
+      for (int i = 0; i < size; i++) {
+        bitmap.add(values[i]);
+      }
+      return bitmap;
+    }
+  }
+
+  private static class BitmapChunk implements Chunk {
+
+    private final long[] words = new long[1024];
+
+    @Override
+    public boolean add(char low) {
+      long bit = 1L << low;
+      int word = low >>> 6;
+      if ((words[word] & bit) != 0) return false;
+
+      words[word] |= bit;
+      return true;
+    }
+
+    @Override
+    public void forEach(LongConsumer consumer) {
+      for (int word = 0; word < words.length; word++) {
+        long bits = words[word];
+        while (bits != 0) {
+          consumer.accept(((long) word << 6) | Long.numberOfTrailingZeros(bits));
+          bits &= bits - 1;
+        }
+      }
+    }
+  }
+}
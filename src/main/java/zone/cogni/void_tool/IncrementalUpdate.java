@@ -0,0 +1,515 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.VOID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Updates a previously generated VoID with the triples added to and removed from the dataset since, instead of computing all statistics again.
+ * The endpoint already has the changes.
+ * <p>
+ * Most statistics only depend on the triples of one subject. The current triples of the changed subjects are queried,
+ * their earlier triples follow from the delta, and the difference between both is applied to the previous statistics.
+ * Distinct classes, properties and objects can be shared with other subjects. Only for those that appeared in or disappeared from
+ * the changed subjects, a bound query checks whether other subjects use them.
+ * <p>
+ * The delta is expected to only add triples that were not there and only remove triples that were, as stores and RDF Patch logs do.
+ */
+public class IncrementalUpdate implements Supplier<VoidModelBuilder> {
+
+  private static final Logger log = LoggerFactory.getLogger(IncrementalUpdate.class);
+
+  private static final int defaultBatchSize = 100;
+
+  // patterns matching a class, property or object of a subject ?s, bound as ?first and ?second
+  private static final Map<String, String> keyPatterns = new LinkedHashMap<>();
+
+  static {
+    keyPatterns.put("type", "?s a ?first");
+    keyPatterns.put("property", "?s ?first ?o");
+    keyPatterns.put("object", "?s ?p ?first");
+    keyPatterns.put("propertyObject", "?s ?first ?second");
+    keyPatterns.put("typeObject", "?s a ?first; ?p ?second");
+    keyPatterns.put("typeProperty", "?s a ?first; ?second ?o");
+  }
+
+  private static final int triples = PartitionStatistics.getColumn("triples");
+  private static final int entities = PartitionStatistics.getColumn("entities");
+  private static final int classes = PartitionStatistics.getColumn("classes");
+  private static final int properties = PartitionStatistics.getColumn("properties");
+  private static final int distinctSubjects = PartitionStatistics.getColumn("distinctSubjects");
+  private static final int distinctObjects = PartitionStatistics.getColumn("distinctObjects");
+
+  /**
+   * Adds the VALUES block at the start of the WHERE group, which is the first group in the query templates.
+   */
+  static String getExistsSparql(String sparql, List<Key> keys) {
+    int whereStart = sparql.indexOf('{') + 1;
+    boolean pairs = keys.get(0).second != null;
+    String values = keys.stream()
+            .map(key -> "(" + toSparql(key.first) + (pairs ? " " + toSparql(key.second) : "") + ")")
+            .collect(Collectors.joining(" ", "\n  VALUES (?first" + (pairs ? " ?second" : "") + ") { ", " }\n"));
+    return sparql.substring(0, whereStart) + values + sparql.substring(whereStart);
+  }
+
+  private static String toSparql(Node uri) {
+    return "<" + uri.getURI() + ">";
+  }
+
+  private final QueryScheduler scheduler;
+  private final BiFunction<String, String, Optional<QueryResult>> runner;
+  private final VoidSettings settings;
+  private final int batchSize;
+
+  private final Map<Node, Set<Triple>> added = new HashMap<>();
+  private final Map<Node, Set<Triple>> removed = new HashMap<>();
+
+  private final long[] datasetStatistics = new long[PartitionStatistics.voidProperties.size()];
+  private final Map<String, long[]> classStatistics = new TreeMap<>();
+  private final Map<String, long[]> propertyStatistics = new TreeMap<>();
+  private final Set<String> exampleResources = new TreeSet<>();
+
+  /**
+   * @param runner runs a query given its sparql and name, without caching because the dataset changed
+   */
+  public IncrementalUpdate(QueryScheduler scheduler, BiFunction<String, String, Optional<QueryResult>> runner, VoidSettings settings) {
+    this.scheduler = scheduler;
+    this.runner = runner;
+    this.settings = settings;
+    this.batchSize = settings.getFanOutSize() > 0 ? settings.getFanOutSize() : defaultBatchSize;
+  }
+
+  /**
+   * @throws IllegalStateException when a query failed, the previous VoID can then not be updated reliably
+   */
+  @Override public VoidModelBuilder get() {
+    long start = currentTimeMillis();
+    readPrevious();
+    readDelta();
+    long addedTriples = added.values().stream().mapToLong(Set::size).sum();
+    long removedTriples = removed.values().stream().mapToLong(Set::size).sum();
+
+    Set<Node> subjects = new LinkedHashSet<>(removed.keySet());
+    subjects.addAll(added.keySet());
+    log.info("Updating '{}' with {} added and {} removed triples of {} subjects.", settings.getPrevious(), addedTriples, removedTriples, subjects.size());
+
+    Map<Node, Set<Triple>> currentTriples = getCurrentTriples(subjects);
+    Set<String> previousClasses = new HashSet<>(classStatistics.keySet());
+
+    Set<Key> keysBefore = new HashSet<>();
+    Set<Key> keysAfter = new HashSet<>();
+    Map<Key, Set<Node>> keySubjects = new HashMap<>();
+    for (Node subject : subjects) {
+      Set<Triple> after = currentTriples.getOrDefault(subject, new HashSet<>());
+      Set<Triple> before = new HashSet<>(after);
+      before.removeAll(added.getOrDefault(subject, new HashSet<>()));
+      before.addAll(removed.getOrDefault(subject, new HashSet<>()));
+
+      count(before, -1, subject, keysBefore, keySubjects);
+      count(after, 1, subject, keysAfter, keySubjects);
+      updateExampleResources(subject, after, previousClasses);
+    }
+
+    Set<Key> changedKeys = new HashSet<>(keysBefore);
+    changedKeys.addAll(keysAfter);
+    changedKeys.removeIf(key -> keysBefore.contains(key) == keysAfter.contains(key));
+    Set<Key> usedByOthers = getUsedByOthers(changedKeys, keySubjects);
+    changedKeys.stream()
+            .filter(key -> !usedByOthers.contains(key))
+            .forEach(key -> countKey(key, keysAfter.contains(key) ? 1 : -1));
+
+    VoidModelBuilder voidModelBuilder = getVoidModelBuilder(addedTriples, removedTriples);
+    log.info("Updated statistics of {} subjects and {} classes, properties or objects in {}s.",
+             subjects.size(), changedKeys.size(), (currentTimeMillis() - start) / 1000);
+    return voidModelBuilder;
+  }
+
+  private void readPrevious() {
+    Model model = RDFDataMgr.loadModel(settings.getPrevious());
+    Resource dataset = model.getResource(settings.getDatasetUri());
+    if (!model.contains(dataset, RDF.type, VOID.Dataset)) {
+      throw new IllegalArgumentException("No void:Dataset <" + settings.getDatasetUri() + "> in previous VoID '" + settings.getPrevious() + "'.");
+    }
+
+    // a dataset statistic that is not there stays unknown, a partition statistic that is not there is 0
+    Arrays.fill(datasetStatistics, PartitionStatistics.missing);
+    readStatistics(dataset, datasetStatistics);
+    model.listObjectsOfProperty(dataset, VOID.exampleResource).forEachRemaining(example -> exampleResources.add(example.asResource().getURI()));
+    readPartitions(dataset, VOID.classPartition, VOID._class, classStatistics);
+    readPartitions(dataset, VOID.propertyPartition, VOID.property, propertyStatistics);
+  }
+
+  private static void readPartitions(Resource dataset, Property partitionProperty, Property termProperty, Map<String, long[]> statistics) {
+    dataset.listProperties(partitionProperty).forEachRemaining(partitionStatement -> {
+      Resource partition = partitionStatement.getResource();
+      Resource term = partition.getPropertyResourceValue(termProperty);
+      if (term != null && term.isURIResource()) readStatistics(partition, getStatistics(statistics, term.getURI()));
+    });
+  }
+
+  private static void readStatistics(Resource resource, long[] statistics) {
+    for (int column = 0; column < statistics.length; column++) {
+      Statement statement = resource.getProperty(resource.getModel().createProperty(VOID.NS + PartitionStatistics.voidProperties.get(column)));
+      if (statement != null) statistics[column] = statement.getLong();
+    }
+  }
+
+  private static long[] getStatistics(Map<String, long[]> statistics, String term) {
+    return statistics.computeIfAbsent(term, key -> new long[PartitionStatistics.voidProperties.size()]);
+  }
+
+  /**
+   * Removals are applied before additions, a patch is applied row by row. Triples that are removed and added again cancel out.
+   */
+  private void readDelta() {
+    settings.getRemoved().forEach(file -> readTriples(file, false));
+    settings.getAdded().forEach(file -> readTriples(file, true));
+    settings.getPatch().forEach(this::readPatch);
+  }
+
+  private void readTriples(String file, boolean addition) {
+    try (InputStream input = DumpVoidGenerator.open(file)) {
+      RDFDataMgr.parse(new DeltaStream(addition), input, DumpVoidGenerator.getLang(file));
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Failed to read file '" + file + "'.", e);
+    }
+  }
+
+  /**
+   * Reads the A and D rows of an RDF Patch, with terms written in full as in N-Triples or N-Quads. Other rows are skipped.
+   */
+  private void readPatch(String file) {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(DumpVoidGenerator.open(file), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.startsWith("A ") && !line.startsWith("D ")) continue;
+
+        InputStream row = new ByteArrayInputStream(line.substring(2).getBytes(StandardCharsets.UTF_8));
+        RDFDataMgr.parse(new DeltaStream(line.startsWith("A ")), row, Lang.NQUADS);
+      }
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Failed to read file '" + file + "'.", e);
+    }
+  }
+
+  private void addDelta(Triple triple, boolean addition) {
+    if (!triple.getSubject().isURI()) {
+      throw new IllegalArgumentException("Subject " + triple.getSubject() + " of the delta is not a uri, it can not be queried.");
+    }
+
+    Map<Node, Set<Triple>> undo = addition ? removed : added;
+    Map<Node, Set<Triple>> delta = addition ? added : removed;
+    Set<Triple> undoTriples = undo.get(triple.getSubject());
+    if (undoTriples != null && undoTriples.remove(triple)) {
+      if (undoTriples.isEmpty()) undo.remove(triple.getSubject());
+      return;
+    }
+    delta.computeIfAbsent(triple.getSubject(), key -> new HashSet<>()).add(triple);
+  }
+
+  private Map<Node, Set<Triple>> getCurrentTriples(Set<Node> subjects) {
+    String sparql = QueryTemplates.get("triples/incremental/subjects.sparql");
+    List<String> uris = subjects.stream().map(Node::getURI).collect(Collectors.toList());
+
+    List<CompletableFuture<Optional<QueryResult>>> batches = new ArrayList<>();
+    for (int start = 0; start < uris.size(); start += batchSize) {
+      List<String> batch = uris.subList(start, Math.min(uris.size(), start + batchSize));
+      String batchName = "triples/incremental/subjects.sparql (" + (start + 1) + "-" + (start + batch.size()) + " of " + uris.size() + ")";
+      batches.add(scheduler.submit(() -> runner.apply(FanOutQuery.getBoundSparql(sparql, "s", batch), batchName)));
+    }
+
+    Map<Node, Set<Triple>> result = new HashMap<>();
+    getRows(batches).forEach(row -> result.computeIfAbsent(row.get("s"), key -> new HashSet<>())
+            .add(Triple.create(row.get("s"), row.get("p"), row.get("o"))));
+    return result;
+  }
+
+  private static List<QueryResult.Row> getRows(List<CompletableFuture<Optional<QueryResult>>> batches) {
+    List<QueryResult.Row> result = new ArrayList<>();
+    for (CompletableFuture<Optional<QueryResult>> batch : batches) {
+      QueryResult queryResult = batch.join().orElseThrow(() -> new IllegalStateException("Query failed, the previous VoID is not updated."));
+      queryResult.rows().forEach(result::add);
+    }
+    return result;
+  }
+
+  /**
+   * Adds the statistics of the triples of one subject, as they are now or subtracts them as they were, and collects their keys.
+   */
+  private void count(Set<Triple> subjectTriples, int sign, Node subject, Set<Key> keys, Map<Key, Set<Node>> keySubjects) {
+    if (subjectTriples.isEmpty()) return;
+
+    // like ?s a [] of the full queries, a subject typed only with a class that is not an iri is an entity, it has no class partition
+    boolean entity = subjectTriples.stream().anyMatch(triple -> triple.getPredicate().equals(RDF.type.asNode()));
+    Set<Node> types = subjectTriples.stream()
+            .filter(triple -> triple.getPredicate().equals(RDF.type.asNode()) && triple.getObject().isURI())
+            .map(Triple::getObject)
+            .collect(Collectors.toSet());
+    Map<Node, Long> predicateTriples = subjectTriples.stream().collect(Collectors.groupingBy(Triple::getPredicate, Collectors.counting()));
+
+    addDataset(triples, sign * subjectTriples.size());
+    addDataset(distinctSubjects, sign);
+    if (entity) addDataset(entities, sign);
+
+    for (Node type : types) {
+      long[] statistics = getStatistics(classStatistics, type.getURI());
+      statistics[triples] += sign * subjectTriples.size();
+      statistics[entities] += sign;
+      statistics[distinctSubjects] += sign;
+      addKey(new Key("type", type, null), subject, keys, keySubjects);
+      predicateTriples.keySet().forEach(predicate -> addKey(new Key("typeProperty", type, predicate), subject, keys, keySubjects));
+    }
+
+    predicateTriples.forEach((predicate, count) -> {
+      long[] statistics = getStatistics(propertyStatistics, predicate.getURI());
+      statistics[triples] += sign * count;
+      statistics[distinctSubjects] += sign;
+      if (entity) statistics[entities] += sign;
+      addKey(new Key("property", predicate, null), subject, keys, keySubjects);
+    });
+
+    subjectTriples.stream().filter(triple -> !triple.getObject().isLiteral()).forEach(triple -> {
+      addKey(new Key("object", triple.getObject(), null), subject, keys, keySubjects);
+      addKey(new Key("propertyObject", triple.getPredicate(), triple.getObject()), subject, keys, keySubjects);
+      types.forEach(type -> addKey(new Key("typeObject", type, triple.getObject()), subject, keys, keySubjects));
+    });
+  }
+
+  private static void addKey(Key key, Node subject, Set<Key> keys, Map<Key, Set<Node>> keySubjects) {
+    keys.add(key);
+    keySubjects.computeIfAbsent(key, k -> new HashSet<>()).add(subject);
+  }
+
+  /**
+   * Adds the first changed subject of a new class as its example resource and drops examples that have no triples anymore.
+   * Classes that are not iris are left out, the previous VoID has no partition that tells whether they are new.
+   */
+  private void updateExampleResources(Node subject, Set<Triple> after, Set<String> previousClasses) {
+    if (after.isEmpty()) {
+      exampleResources.remove(subject.getURI());
+      return;
+    }
+    if (!subject.getURI().startsWith(settings.getUriSpace())) return;
+
+    after.stream()
+            .filter(triple -> triple.getPredicate().equals(RDF.type.asNode()) && triple.getObject().isURI())
+            .map(triple -> triple.getObject().getURI())
+            .filter(type -> !previousClasses.contains(type))
+            .forEach(type -> {
+              previousClasses.add(type);
+              exampleResources.add(subject.getURI());
+            });
+  }
+
+  private void addDataset(int column, long value) {
+    if (datasetStatistics[column] != PartitionStatistics.missing) datasetStatistics[column] += value;
+  }
+
+  /**
+   * @return keys that subjects outside the delta still use, they do not change the distinct counts
+   */
+  private Set<Key> getUsedByOthers(Set<Key> changedKeys, Map<Key, Set<Node>> keySubjects) {
+    String template = QueryTemplates.get("triples/incremental/exists.sparql");
+    Map<String, List<Key>> keysByKind = changedKeys.stream()
+            .filter(key -> key.isQueryable() || logSkipped(key))
+            .collect(Collectors.groupingBy(key -> key.kind, TreeMap::new, Collectors.toList()));
+
+    List<CompletableFuture<Optional<QueryResult>>> batches = new ArrayList<>();
+    List<String> batchKinds = new ArrayList<>();
+    keysByKind.forEach((kind, keys) -> {
+      for (int start = 0; start < keys.size(); start += batchSize) {
+        List<Key> batch = keys.subList(start, Math.min(keys.size(), start + batchSize));
+        String subjects = batch.stream()
+                .flatMap(key -> keySubjects.get(key).stream())
+                .distinct()
+                .map(IncrementalUpdate::toSparql)
+                .collect(Collectors.joining(", "));
+        String sparql = getExistsSparql(MessageFormatter.format(template, keyPatterns.get(kind), subjects).getMessage(), batch);
+        String batchName = "triples/incremental/exists.sparql " + kind + " (" + (start + 1) + "-" + (start + batch.size()) + " of " + keys.size() + ")";
+        batches.add(scheduler.submit(() -> runner.apply(sparql, batchName)));
+        batchKinds.add(kind);
+      }
+    });
+
+    Set<Key> result = new HashSet<>();
+    for (int i = 0; i < batches.size(); i++) {
+      String kind = batchKinds.get(i);
+      getRows(batches.subList(i, i + 1)).forEach(row -> result.add(new Key(kind, row.get("first"), row.get("second"))));
+    }
+    // keys that can not be queried are taken as still used, their counts stay as they were
+    changedKeys.stream().filter(key -> !key.isQueryable()).forEach(result::add);
+    return result;
+  }
+
+  private static boolean logSkipped(Key key) {
+    log.warn("Blank node in '{}' can not be queried, its distinct count is not updated.", key);
+    return false;
+  }
+
+  private void countKey(Key key, int sign) {
+    switch (key.kind) {
+      case "type":
+        addDataset(classes, sign);
+        break;
+      case "property":
+        addDataset(properties, sign);
+        break;
+      case "object":
+        addDataset(distinctObjects, sign);
+        break;
+      case "propertyObject":
+        getStatistics(propertyStatistics, key.first.getURI())[distinctObjects] += sign;
+        break;
+      case "typeObject":
+        getStatistics(classStatistics, key.first.getURI())[distinctObjects] += sign;
+        break;
+      case "typeProperty":
+        getStatistics(classStatistics, key.first.getURI())[properties] += sign;
+        getStatistics(propertyStatistics, key.second.getURI())[classes] += sign;
+        break;
+      default:
+        throw new IllegalStateException("Unknown key " + key + ".");
+    }
+  }
+
+  /**
+   * Like the grouped queries, partitions and partition statistics with a count of 0 are left out.
+   */
+  private VoidModelBuilder getVoidModelBuilder(long addedTriples, long removedTriples) {
+    VoidModelBuilder voidModelBuilder = new VoidModelBuilder(settings);
+    voidModelBuilder.addComment("Updated from '" + settings.getPrevious() + "' with " + addedTriples + " added and " + removedTriples + " removed triples.");
+    exampleResources.forEach(voidModelBuilder::addExampleResource);
+
+    for (int column = 0; column < datasetStatistics.length; column++) {
+      if (datasetStatistics[column] != PartitionStatistics.missing) {
+        voidModelBuilder.addDatasetStatistic(PartitionStatistics.voidProperties.get(column), checkCount(datasetStatistics[column]));
+      }
+    }
+
+    classStatistics.forEach((type, statistics) -> {
+      statistics[classes] = statistics[entities] > 0 ? 1 : 0;
+      addPartition(type, statistics, (voidProperty, value) -> voidModelBuilder.addClassStatistic(type, voidProperty, value));
+      if (statistics[triples] > 0) voidModelBuilder.addVocabularyTerm(type);
+    });
+    propertyStatistics.forEach((property, statistics) -> {
+      statistics[properties] = statistics[triples] > 0 ? 1 : 0;
+      addPartition(property, statistics, (voidProperty, value) -> voidModelBuilder.addPropertyStatistic(property, voidProperty, value));
+      if (statistics[triples] > 0) voidModelBuilder.addVocabularyTerm(property);
+    });
+    return voidModelBuilder;
+  }
+
+  private static void addPartition(String term, long[] statistics, BiConsumer<String, Long> consumer) {
+    if (statistics[triples] <= 0) return;
+
+    for (int column = 0; column < statistics.length; column++) {
+      long value = checkCount(statistics[column]);
+      if (value > 0) consumer.accept(PartitionStatistics.voidProperties.get(column), value);
+    }
+  }
+
+  private static long checkCount(long value) {
+    if (value >= 0) return value;
+
+    log.warn("A statistic became negative, the delta does not match the previous VoID. It is set to 0.");
+    return 0;
+  }
+
+  private class DeltaStream extends StreamRDFBase {
+
+    private final boolean addition;
+
+    private DeltaStream(boolean addition) {
+      this.addition = addition;
+    }
+
+    @Override
+    public void triple(Triple triple) {
+      addDelta(triple, addition);
+    }
+
+    @Override
+    public void quad(Quad quad) {
+      addDelta(quad.asTriple(), addition);
+    }
+  }
+
+  /**
+   * A class, property or object used by a subject, or a pair of them.
+   */
+  static class Key {
+
+    private final String kind;
+    private final Node first;
+    private final Node second;
+
+    private Key(String kind, Node first, Node second) {
+      this.kind = kind;
+      this.first = first;
+      this.second = second;
+    }
+
+    private boolean isQueryable() {
+      return first.isURI() && (second == null || second.isURI());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) return true;
+      if (!(other instanceof Key)) return false;
+      Key key = (Key) other;
+      return kind.equals(key.kind) && first.equals(key.first) && Objects.equals(second, key.second);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, first, second);
+    }
+
+    @Override
+    public String toString() {
+      return kind + " " + first + (second == null ? "" : " " + second);
+    }
+  }
+}
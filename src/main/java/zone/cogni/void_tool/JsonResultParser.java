@@ -0,0 +1,82 @@
+package zone.cogni.void_tool;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.jena.rdf.model.RDFNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming parser for application/sparql-results+json, only a single binding is held in memory at a time.
+ */
+public class JsonResultParser implements SparqlResultParser {
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Override
+  public void parse(InputStream input, QueryResultHandler handler) throws IOException {
+    try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Invalid SPARQL JSON result: no object found.");
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+
+        if (field.equals("head")) handler.variables(getVariables(parser.readValueAsTree()));
+        else if (field.equals("results")) parseResults(parser, handler);
+        else parser.skipChildren();
+      }
+    }
+  }
+
+  private Set<String> getVariables(JsonNode head) {
+    Set<String> variables = new LinkedHashSet<>();
+    head.path("vars").forEach(variable -> variables.add(variable.textValue()));
+    return variables;
+  }
+
+  private void parseResults(JsonParser parser, QueryResultHandler handler) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      if (!field.equals("bindings")) {
+        parser.skipChildren();
+        continue;
+      }
+
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        handler.row(getRow(parser.readValueAsTree()));
+      }
+    }
+  }
+
+  private Map<String, RDFNode> getRow(JsonNode bindings) {
+    Map<String, RDFNode> row = new HashMap<>();
+
+    Iterator<Map.Entry<String, JsonNode>> fields = bindings.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> binding = fields.next();
+      row.put(binding.getKey(), getValue(binding.getValue()));
+    }
+
+    return row;
+  }
+
+  private RDFNode getValue(JsonNode term) {
+    String type = term.path("type").textValue();
+    String value = term.path("value").textValue();
+
+    if ("uri".equals(type)) return ResultTerms.uri(value);
+    if ("bnode".equals(type)) return ResultTerms.blankNode(value);
+    return ResultTerms.literal(value, term.path("datatype").textValue(), term.path("xml:lang").textValue());
+  }
+}
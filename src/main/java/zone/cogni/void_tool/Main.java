@@ -1,17 +1,23 @@
 package zone.cogni.void_tool;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vavr.control.Try;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.jena.rdf.model.Model;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static io.vavr.API.$;
@@ -29,41 +35,139 @@ public class Main implements CommandLineRunner {
   private static String usage =
           "usage: void.jar       [--datasetUri uri] \n" +
                   "                      [--sparqlEndpoint url] \n" +
+                  "                      or [--tdb2 directory : local TDB2 database queried in process instead of over HTTP, \n" +
+                  "                                     --sparqlEndpoint is then only written in the VoID]\n" +
+                  "                      or [--input file,... : N-Triples, N-Quads, Turtle or other RDF dumps, optionally .gz or .bz2, instead of --sparqlEndpoint]\n" +
+                  "                      or [--merge file,... : partial statistics files of all shards of a --shard run, merged into the VoID]\n" +
                   "optional:             [--file      : where output is written, default dataset.ttl]\n" +
                   "                      [--useGraphs : true or false, default false. Use true if you want to query all graphs  instead of only the default graph] \n" +
+                  "                      [--graphSubsets : true or false, default false. Use true with --useGraphs true to add statistics per named graph as void:subset]\n" +
                   "                      [--format    : default TURTLE  \n" +
-                  "                                     one of RDF/XML, RDF/XML-ABBREV, N-TRIPLE, TURTLE and N3] \n" +
+                  "                                     one of RDF/XML, RDF/XML-ABBREV, N-TRIPLE, TURTLE, N3 and RDF-THRIFT, \n" +
+                  "                                     all but RDF/XML are streamed. A --file ending in .gz is gzipped] \n" +
                   "                      [--timeout   : query timeout in seconds, default 300]\n" +
-                  "                      [--uriSpace  : uri space of dataset, also used to limit example resources]";
+                  "                      [--parallelism : number of queries running at the same time, default 4]\n" +
+                  "                      [--pageSize  : fetch queries returning a row per class or property in pages of this size, default no paging]\n" +
+                  "                      [--fanOutSize : run class and property partition queries per batch of this many classes or properties, default no fan out]\n" +
+                  "                      [--combined  : true or false, default false. Use true to compute the statistics with a query per dataset, class and property \n" +
+                  "                                     partition set instead of a query per statistic]\n" +
+                  "                      [--approximate : true or false, default false. Use true to estimate entities, distinct subjects and distinct objects with HyperLogLog]\n" +
+                  "                      [--precision : HyperLogLog precision between 4 and 18, default 14]\n" +
+                  "                      [--sketchSample : fraction of the values streamed from the endpoint into the HyperLogLog sketches, \n" +
+                  "                                     selected on their hash, 1 for all values, default 0.01. Blank nodes are not sampled]\n" +
+                  "                      [--sample    : fraction of the subjects up to 0.5, for example 0.01. Estimates the counts from a hash sample with \n" +
+                  "                                     95% confidence intervals, blank nodes are counted exactly, default no sample]\n" +
+                  "                      [--previous  : VoID file of an earlier run, updated with the changes in --added, --removed and --patch \n" +
+                  "                                     instead of computing all statistics. The endpoint must already have the changes]\n" +
+                  "                      [--added     : file,... with the triples added since --previous, N-Triples or another RDF syntax]\n" +
+                  "                      [--removed   : file,... with the triples removed since --previous]\n" +
+                  "                      [--patch     : file,... RDF Patch with the changes since --previous, terms written in full]\n" +
+                  "                      [--shard     : i/n, for example 2/8. With --input only count the subjects of shard i of n and \n" +
+                  "                                     write their partial statistics to --file, to be combined with --merge]\n" +
+                  "                      [--retries   : times a query failing with a timeout or server error is tried again, default 2]\n" +
+                  "                      [--retryDelay : milliseconds before the first retry, doubling with each retry and randomized, default 1000]\n" +
+                  "                      [--fallback  : true or false, default true. Use false to skip the paged, fan out and HyperLogLog queries \n" +
+                  "                                     tried when the query for a statistic keeps failing]\n" +
+                  "                      [--cache     : directory where query results are kept, a rerun only executes queries without a cached result, default no cache]\n" +
+                  "                      [--cacheTtl  : hours a cached query result stays valid, default 24]\n" +
+                  "                      [--refresh   : true or false, default false. Use true to execute all queries again and replace the cached results]\n" +
+                  "                      [--summary   : true or false, default false. Use true to print a table of all queries at the end, \n" +
+                  "                                     a JSON report of the queries is always written next to --file]\n" +
+                  "                      [--uriSpace  : uri space of dataset, also used to limit example resources]\n" +
+                  "\n" +
+                  "batch:   void.jar     --batch file.yaml : generate VoID for all datasets in the file, see README\n" +
+                  "\n" +
+                  "server:  void.jar     --server true : keep running and generate VoID for jobs posted over HTTP, see README\n" +
+                  "                      [--port      : HTTP port, default 8080]\n" +
+                  "                      [--workers   : number of jobs running at the same time, default 2]";
 
 
-  private static String datasetUri;
-  private static String sparqlEndpoint;
-  private static int timeoutInSeconds = 300;
-  private static String format = "TURTLE";
-  private static String file = "dataset.ttl";
-  private static String uriSpace;
-  private static boolean useGraphs;
+  private static final VoidSettings settings = new VoidSettings();
+  private static final ServerSettings serverSettings = new ServerSettings();
+  private static final List<String> runArguments = new ArrayList<>();
+  private static String batchFile;
+  private static BatchRunner batchRunner;
 
   public static void main(String[] args) {
-    SpringApplication.run(Main.class, args);
+    processArguments(Arrays.asList(args));
+
+    SpringApplication application = new SpringApplication(Main.class);
+    application.setWebEnvironment(serverSettings.isServer());
+    application.setDefaultProperties(Collections.singletonMap("server.port", serverSettings.getPort()));
+    application.run(args);
+  }
+
+  @Bean
+  public ServerSettings serverSettings() {
+    return serverSettings;
+  }
+
+  /**
+   * Keeps the query metrics of all jobs of the server, they are served on GET /metrics.
+   */
+  @Bean
+  @ConditionalOnWebApplication
+  public MeterRegistry meterRegistry() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    Metrics.addRegistry(registry);
+    return registry;
   }
 
   @Override
-  public void run(String... args) throws FileNotFoundException {
+  public void run(String... args) throws IOException {
+    if (serverSettings.isServer()) {
+      log.info("VoID server listening on port {} with {} workers.", serverSettings.getPort(), serverSettings.getWorkers());
+      return;
+    }
+
+    runCommandLine();
+  }
+
+  /**
+   * Runs a single dataset or a batch, once the arguments are processed. Needs no Spring context.
+   */
+  static void runCommandLine() throws IOException {
     long start = currentTimeMillis();
 
-    processArguments(Arrays.asList(args));
+    if (batchRunner != null) {
+      List<BatchRunner.DatasetResult> results = batchRunner.run();
+      BatchRunner.printSummary(results, System.out);
+      log.info("Total time {}s.", (currentTimeMillis() - start) / 1000);
+      if (results.stream().anyMatch(result -> !result.isSuccess())) exit(1);
+      return;
+    }
 
-    VoidGenerator voidGenerator = new VoidGenerator(timeoutInSeconds, sparqlEndpoint, datasetUri, uriSpace, useGraphs, getSettings());
-    Model model = voidGenerator.get();
+    if (settings.getShardCount() > 0) {
+      new DumpVoidGenerator(settings).writeShard(new File(settings.getFile()));
+      log.info("Partial statistics of shard {}/{} written to file '{}'.", settings.getShardIndex(), settings.getShardCount(), settings.getFile());
+      log.info("Total time {}s.", (currentTimeMillis() - start) / 1000);
+      return;
+    }
 
-    model.write(new FileOutputStream(file), format);
-    log.info("{} triples written to file '{}'.", model.size(), file);
+    VoidModelBuilder voidModelBuilder = !settings.getMerge().isEmpty() ? new ShardMerger(settings).get()
+                                        : settings.getInput().isEmpty() ? generateFromSparqlEndpoint()
+                                        : new DumpVoidGenerator(settings).get();
+
+    long triples = new VoidWriter(settings).write(voidModelBuilder);
+    log.info("{} triples written to file '{}'.", triples, settings.getFile());
     log.info("Total time {}s.", (currentTimeMillis() - start) / 1000);
   }
 
-  private  void processArguments(List<String> arguments) {
+  private static VoidModelBuilder generateFromSparqlEndpoint() throws IOException {
+    try (SparqlEndpointClient client = new SparqlEndpointClient(settings.getParallelism())) {
+      VoidGenerator voidGenerator = new VoidGenerator(client, settings);
+      VoidModelBuilder voidModelBuilder = voidGenerator.get();
+      log.info("Connection pool: {}", client.getPoolStats());
+
+      File reportFile = RunReport.getReportFile(settings.getFile());
+      voidGenerator.getRunReport().write(reportFile, settings);
+      log.info("Query report written to file '{}'.", reportFile);
+      if (settings.isSummary()) voidGenerator.getRunReport().printSummary(System.out);
+      return voidModelBuilder;
+    }
+  }
+
+  static void processArguments(List<String> arguments) {
     if (arguments.isEmpty() || arguments.get(0).equals("--help")) {
       System.out.println(usage);
       exit(0);
@@ -75,61 +179,221 @@ public class Main implements CommandLineRunner {
 
 
       Match(argument).of(
-              Case($("--datasetUri"), () -> datasetUri = value),
-              Case($("--sparqlEndpoint"), () -> sparqlEndpoint = value),
-              Case($("--useGraphs"), () -> useGraphs = Boolean.parseBoolean(value)),
-              Case($("--format"), () -> format = value),
-              Case($("--timeout"), () -> timeoutInSeconds = Integer.parseInt(value)),
-              Case($("--file"), () -> file = value),
-              Case($("--uriSpace"), () -> uriSpace = value),
+              Case($("--server"), () -> serverSettings.setServer(Boolean.parseBoolean(value))),
+              Case($("--port"), () -> serverSettings.setPort(Integer.parseInt(value))),
+              Case($("--workers"), () -> serverSettings.setWorkers(Integer.parseInt(value))),
+              Case($("--batch"), () -> batchFile = value),
               Case($("--help"), () -> Try.run(Main::giveHelp)),
-              Case($(), () -> Try.run(() -> invalidArgument(argument)))
+              Case($(), () -> Try.run(() -> setArgument(settings, argument, value)).onFailure(e -> invalidArgument(argument)))
       );
+      if (!Arrays.asList("--server", "--port", "--workers", "--batch").contains(argument)) {
+        runArguments.add(argument);
+        runArguments.add(value);
+      }
+    }
+
+    if (serverSettings.isServer()) {
+      checkServerArguments();
+      return;
     }
 
-    if (uriSpace == null) uriSpace = "";
+    if (batchFile != null) {
+      checkBatchArguments();
+      return;
+    }
 
     printSettings();
 
     checkArguments();
   }
 
-  private  void checkArguments() {
-    boolean fail = false;
+  static boolean isServer() {
+    return serverSettings.isServer();
+  }
+
+  /**
+   * Sets a generation option, as given on the command line or in a server job.
+   *
+   * @throws IllegalArgumentException for an unknown option or a value that is not a number where one is expected
+   */
+  static void setArgument(VoidSettings settings, String argument, String value) {
+    Match(argument).of(
+            Case($("--datasetUri"), () -> settings.setDatasetUri(value)),
+            Case($("--sparqlEndpoint"), () -> settings.setSparqlEndpoint(value)),
+            Case($("--tdb2"), () -> settings.setTdb2(value)),
+            Case($("--input"), () -> settings.setInput(Arrays.asList(StringUtils.split(value, ',')))),
+            Case($("--shard"), () -> setShard(settings, value)),
+            Case($("--merge"), () -> settings.setMerge(Arrays.asList(StringUtils.split(value, ',')))),
+            Case($("--useGraphs"), () -> settings.setUseGraphs(Boolean.parseBoolean(value))),
+            Case($("--graphSubsets"), () -> settings.setGraphSubsets(Boolean.parseBoolean(value))),
+            Case($("--format"), () -> settings.setFormat(value)),
+            Case($("--timeout"), () -> settings.setTimeoutInSeconds(Integer.parseInt(value))),
+            Case($("--parallelism"), () -> settings.setParallelism(Integer.parseInt(value))),
+            Case($("--pageSize"), () -> settings.setPageSize(Integer.parseInt(value))),
+            Case($("--fanOutSize"), () -> settings.setFanOutSize(Integer.parseInt(value))),
+            Case($("--combined"), () -> settings.setCombined(Boolean.parseBoolean(value))),
+            Case($("--approximate"), () -> settings.setApproximate(Boolean.parseBoolean(value))),
+            Case($("--precision"), () -> settings.setPrecision(Integer.parseInt(value))),
+            Case($("--sketchSample"), () -> settings.setSketchSample(Double.parseDouble(value))),
+            Case($("--sample"), () -> settings.setSample(Double.parseDouble(value))),
+            Case($("--previous"), () -> settings.setPrevious(value)),
+            Case($("--added"), () -> settings.setAdded(Arrays.asList(StringUtils.split(value, ',')))),
+            Case($("--removed"), () -> settings.setRemoved(Arrays.asList(StringUtils.split(value, ',')))),
+            Case($("--patch"), () -> settings.setPatch(Arrays.asList(StringUtils.split(value, ',')))),
+            Case($("--retries"), () -> settings.setRetries(Integer.parseInt(value))),
+            Case($("--retryDelay"), () -> settings.setRetryDelayMillis(Long.parseLong(value))),
+            Case($("--fallback"), () -> settings.setFallback(Boolean.parseBoolean(value))),
+            Case($("--cache"), () -> settings.setCacheDirectory(value)),
+            Case($("--cacheTtl"), () -> settings.setCacheTimeToLiveInHours(Long.parseLong(value))),
+            Case($("--refresh"), () -> settings.setRefresh(Boolean.parseBoolean(value))),
+            Case($("--summary"), () -> settings.setSummary(Boolean.parseBoolean(value))),
+            Case($("--file"), () -> settings.setFile(value)),
+            Case($("--uriSpace"), () -> settings.setUriSpace(value)),
+            Case($(), () -> {
+              throw new IllegalArgumentException("invalid argument given: '" + argument + "'");
+            })
+    );
+  }
+
+  private static VoidSettings setShard(VoidSettings settings, String value) {
+    String[] parts = StringUtils.split(value, '/');
+    if (parts.length != 2) throw new IllegalArgumentException("--shard must be i/n, got '" + value + "'");
+
+    return settings.setShard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+  }
 
-    if (StringUtils.isBlank(datasetUri)) {
-      System.out.println("Invalid parameters: --datasetUri is not set.");
-      fail = true;
+  private static void checkArguments() {
+    List<String> invalidParameters = getInvalidParameters(settings);
+    invalidParameters.forEach(invalidParameter -> System.out.println("Invalid parameters: " + invalidParameter));
+
+    if (!invalidParameters.isEmpty()) giveHelp();
+  }
+
+  /**
+   * @return a message per invalid option, empty if the settings can be run
+   */
+  static List<String> getInvalidParameters(VoidSettings settings) {
+    List<String> result = new ArrayList<>();
+
+    if (StringUtils.isBlank(settings.getDatasetUri())) {
+      result.add("--datasetUri is not set.");
     }
 
-    if (StringUtils.isBlank(sparqlEndpoint)) {
-      System.out.println("Invalid parameters: --sparqlEndpoint is not set.");
-      fail = true;
+    if (StringUtils.isBlank(settings.getSparqlEndpoint()) && settings.getTdb2() == null && settings.getInput().isEmpty() && settings.getMerge().isEmpty()) {
+      result.add("--sparqlEndpoint, --tdb2, --input or --merge is not set.");
     }
 
-    if (fail) giveHelp();
+    // connecting to a missing directory would create an empty database
+    if (settings.getTdb2() != null && !new File(settings.getTdb2()).isDirectory()) {
+      result.add("--tdb2 directory '" + settings.getTdb2() + "' does not exist.");
+    }
+
+    if (settings.getTdb2() != null && !settings.getInput().isEmpty()) {
+      result.add("--tdb2 and --input can not be used together.");
+    }
+
+    if ((settings.getShardCount() != 0 || settings.getShardIndex() != 0) && (settings.getShardIndex() < 1 || settings.getShardIndex() > settings.getShardCount())) {
+      result.add("--shard must be i/n with i between 1 and n.");
+    }
+
+    if (settings.getShardCount() > 0 && settings.getInput().isEmpty()) {
+      result.add("--shard needs --input.");
+    }
+
+    if (!settings.getMerge().isEmpty() && (!settings.getInput().isEmpty() || settings.getTdb2() != null || settings.getShardCount() > 0)) {
+      result.add("--merge can not be used with --input, --tdb2 or --shard.");
+    }
+
+    if (settings.isGraphSubsets() && (!settings.isUseGraphs() || !settings.getInput().isEmpty())) {
+      result.add("--graphSubsets needs --useGraphs true and a --sparqlEndpoint.");
+    }
+
+    if (settings.getParallelism() < 1) {
+      result.add("--parallelism must be at least 1.");
+    }
+
+    if (settings.getPageSize() < 0) {
+      result.add("--pageSize can not be negative.");
+    }
+
+    if (settings.getFanOutSize() < 0) {
+      result.add("--fanOutSize can not be negative.");
+    }
+
+    if (settings.isCombined() && settings.isApproximate()) {
+      result.add("--combined and --approximate can not be used together.");
+    }
+
+    if (settings.getPrecision() < HyperLogLog.minPrecision || settings.getPrecision() > HyperLogLog.maxPrecision) {
+      result.add("--precision must be between " + HyperLogLog.minPrecision + " and " + HyperLogLog.maxPrecision + ".");
+    }
+
+    if (settings.getSketchSample() <= 0 || settings.getSketchSample() > 1) {
+      result.add("--sketchSample must be above 0 and at most 1.");
+    }
+
+    if (settings.getSample() < 0 || settings.getSample() > 0.5) {
+      result.add("--sample must be between 0 and 0.5.");
+    }
+
+    if (settings.getSample() > 0 && (settings.isCombined() || settings.isApproximate() || settings.isGraphSubsets() || !settings.getInput().isEmpty())) {
+      result.add("--sample can not be used with --combined, --approximate, --graphSubsets or --input.");
+    }
+
+    boolean delta = !settings.getAdded().isEmpty() || !settings.getRemoved().isEmpty() || !settings.getPatch().isEmpty();
+    if (settings.getPrevious() == null && delta) {
+      result.add("--added, --removed and --patch need --previous.");
+    }
+
+    if (settings.getPrevious() != null && !delta) {
+      result.add("--previous needs --added, --removed or --patch.");
+    }
+
+    if (settings.getPrevious() != null
+        && (settings.isUseGraphs() || settings.isApproximate() || settings.getSample() > 0 || !settings.getInput().isEmpty())) {
+      result.add("--previous can not be used with --useGraphs, --approximate, --sample or --input.");
+    }
+
+    if (settings.getRetries() < 0 || settings.getRetryDelayMillis() < 0) {
+      result.add("--retries and --retryDelay can not be negative.");
+    }
+
+    if (settings.getCacheTimeToLiveInHours() < 0) {
+      result.add("--cacheTtl can not be negative.");
+    }
+
+    return result;
   }
 
-  private  void printSettings() {
-    System.out.println(getSettings());
+  /**
+   * Other options given with --batch apply to all datasets of the batch file.
+   */
+  private static void checkBatchArguments() {
+    try {
+      batchRunner = new BatchRunner(new File(batchFile), runArguments);
+    }
+    catch (IOException e) {
+      System.out.println("Invalid parameters: --batch file '" + batchFile + "' can not be read. " + e.getMessage());
+      giveHelp();
+    }
+    catch (IllegalArgumentException | ClassCastException e) {
+      Arrays.stream(e.getMessage().split("\n")).forEach(invalid -> System.out.println("Invalid parameters: " + invalid));
+      giveHelp();
+    }
+  }
+
+  private static void checkServerArguments() {
+    if (serverSettings.getWorkers() < 1) {
+      System.out.println("Invalid parameters: --workers must be at least 1.");
+      giveHelp();
+    }
   }
 
-  private  String getSettings() {
-    return "\n" +
-            "\n" +
-            "Running with settings: " + "\n" +
-            "\n" +
-            "\t\t Dataset uri     : " + datasetUri + "\n" +
-            "\t\t Use graphs      : " + useGraphs + "\n" +
-            "\t\t Uri space       : " + uriSpace + "\n" +
-            "\t\t Sparql endpoint : " + sparqlEndpoint + "\n" +
-            "\t\t Timeout         : " + timeoutInSeconds + "\n" +
-            "\t\t File            : " + file + "\n" +
-            "\t\t Format          : " + format + "\n" +
-            "\n";
+  private static void printSettings() {
+    System.out.println(settings);
   }
 
-  private  void invalidArgument(String argument) {
+  private static void invalidArgument(String argument) {
     System.err.println("invalid argument given: '" + argument + "'");
     giveHelp();
   }
@@ -0,0 +1,104 @@
+package zone.cogni.void_tool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append only store of byte records in a memory mapped temporary file.
+ * A record is an int length followed by its bytes and never crosses a mapped segment.
+ */
+public class MappedByteStore implements Closeable {
+
+  private static final int segmentShift = 28; // 256MB per mapped segment
+  private static final long segmentLength = 1L << segmentShift;
+  private static final long segmentMask = segmentLength - 1;
+
+  private final FileChannel channel;
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+  private long size;
+
+  public MappedByteStore(Path directory, String name) {
+    try {
+      Path file = Files.createTempFile(directory, name, ".bin");
+      // deleted by the OS once closed and no longer mapped, a mapped file can not be deleted on Windows
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return offset of the record
+   */
+  public long append(byte[] bytes) {
+    long recordLength = Integer.BYTES + bytes.length;
+    if (recordLength > segmentLength) throw new IllegalArgumentException("Record of " + bytes.length + " bytes is too large.");
+
+    if ((size & segmentMask) + recordLength > segmentLength) size = (size | segmentMask) + 1;
+
+    long offset = size;
+    MappedByteBuffer segment = getSegment(offset);
+    int position = (int) (offset & segmentMask);
+    segment.putInt(position, bytes.length);
+    for (int i = 0; i < bytes.length; i++) {
+      segment.put(position + Integer.BYTES + i, bytes[i]);
+    }
+
+    size += recordLength;
+    return offset;
+  }
+
+  public boolean equals(long offset, byte[] bytes) {
+    MappedByteBuffer segment = getSegment(offset);
+    int position = (int) (offset & segmentMask);
+    if (segment.getInt(position) != bytes.length) return false;
+
+    for (int i = 0; i < bytes.length; i++) {
+      if (segment.get(position + Integer.BYTES + i) != bytes[i]) return false;
+    }
+    return true;
+  }
+
+  public byte[] get(long offset) {
+    MappedByteBuffer segment = getSegment(offset);
+    int position = (int) (offset & segmentMask);
+    byte[] bytes = new byte[segment.getInt(position)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = segment.get(position + Integer.BYTES + i);
+    }
+    return bytes;
+  }
+
+  private MappedByteBuffer getSegment(long offset) {
+    int segment = (int) (offset >>> segmentShift);
+    while (segments.size() <= segment) {
+      try {
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * segmentLength, segmentLength));
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return segments.get(segment);
+  }
+
+  @Override
+  public void close() {
+    try {
+      segments.clear();
+      channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package zone.cogni.void_tool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable array of longs in a memory mapped temporary file, so it lives outside the heap and is paged to disk by the OS.
+ * Unwritten positions read as 0.
+ */
+public class MappedLongArray implements Closeable {
+
+  private static final int segmentShift = 24; // 16M longs, 128MB per mapped segment
+  private static final long segmentLength = 1L << segmentShift;
+  private static final long segmentMask = segmentLength - 1;
+
+  private final FileChannel channel;
+  private final List<LongBuffer> segments = new ArrayList<>();
+
+  public MappedLongArray(Path directory, String name) {
+    try {
+      Path file = Files.createTempFile(directory, name, ".bin");
+      // deleted by the OS once closed and no longer mapped, a mapped file can not be deleted on Windows
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public long get(long index) {
+    int segment = (int) (index >>> segmentShift);
+    if (segment >= segments.size()) return 0;
+    return segments.get(segment).get((int) (index & segmentMask));
+  }
+
+  public void set(long index, long value) {
+    getSegment(index).put((int) (index & segmentMask), value);
+  }
+
+  public void add(long index, long delta) {
+    LongBuffer segment = getSegment(index);
+    int position = (int) (index & segmentMask);
+    segment.put(position, segment.get(position) + delta);
+  }
+
+  private LongBuffer getSegment(long index) {
+    int segment = (int) (index >>> segmentShift);
+    while (segments.size() <= segment) {
+      segments.add(map(segments.size()));
+    }
+    return segments.get(segment);
+  }
+
+  private LongBuffer map(int segment) {
+    try {
+      long bytes = segmentLength * Long.BYTES;
+      return channel.map(FileChannel.MapMode.READ_WRITE, segment * bytes, bytes).asLongBuffer();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      segments.clear();
+      channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package zone.cogni.void_tool;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Encodes strings to dense long ids 0, 1, 2, ... in the order they are first seen.
+ * <p>
+ * The hash table, the hashes and the strings themselves are memory mapped, only a few fields live on the heap.
+ * Strings are compared byte by byte on a hash match, so ids are exact and never shared.
+ */
+public class NodeDictionary implements Closeable {
+
+  private static final double maxLoad = 0.6;
+
+  private final Path directory;
+  private final MappedLongArray hashes;
+  private final MappedLongArray offsets;
+  private final MappedByteStore strings;
+
+  private MappedLongArray slots; // id + 1 per slot, 0 when empty
+  private long capacity = 1 << 16;
+  private long size;
+
+  public NodeDictionary(Path directory) {
+    this.directory = directory;
+    this.hashes = new MappedLongArray(directory, "hashes");
+    this.offsets = new MappedLongArray(directory, "offsets");
+    this.strings = new MappedByteStore(directory, "strings");
+    this.slots = new MappedLongArray(directory, "slots");
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public long encode(String value) {
+    long hash = HyperLogLog.hash(value);
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+    long slot = hash & (capacity - 1);
+    long entry;
+    while ((entry = slots.get(slot)) != 0) {
+      long id = entry - 1;
+      if (hashes.get(id) == hash && strings.equals(offsets.get(id), bytes)) return id;
+      slot = (slot + 1) & (capacity - 1);
+    }
+
+    long id = size++;
+    hashes.set(id, hash);
+    offsets.set(id, strings.append(bytes));
+    slots.set(slot, id + 1);
+
+    if (size > capacity * maxLoad) grow();
+    return id;
+  }
+
+  public String decode(long id) {
+    return new String(strings.get(offsets.get(id)), StandardCharsets.UTF_8);
+  }
+
+  private void grow() {
+    MappedLongArray grown = new MappedLongArray(directory, "slots");
+    long grownCapacity = capacity * 2;
+
+    for (long id = 0; id < size; id++) {
+      long slot = hashes.get(id) & (grownCapacity - 1);
+      while (grown.get(slot) != 0) {
+        slot = (slot + 1) & (grownCapacity - 1);
+      }
+      grown.set(slot, id + 1);
+    }
+
+    slots.close();
+    slots = grown;
+    capacity = grownCapacity;
+  }
+
+  @Override
+  public void close() {
+    slots.close();
+    hashes.close();
+    offsets.close();
+    strings.close();
+  }
+}
@@ -0,0 +1,89 @@
+package zone.cogni.void_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * Fetches the result of a query in pages using a stable ORDER BY with LIMIT and OFFSET.
+ * While a page is being merged the next one is already running on the scheduler.
+ */
+public class PagedQuery {
+
+  private static final Logger log = LoggerFactory.getLogger(PagedQuery.class);
+
+  static String getPageSparql(String sparql, String orderVariable, int pageSize, long offset) {
+    return "SELECT * {\n" +
+           "  {\n" + sparql + "\n  }\n" +
+           "}\n" +
+           "ORDER BY ?" + orderVariable + "\n" +
+           "LIMIT " + pageSize + "\n" +
+           "OFFSET " + offset + "\n";
+  }
+
+  private final QueryScheduler scheduler;
+  private final BiFunction<String, String, Optional<QueryResult>> runner;
+  private final String sparql;
+  private final String sparqlName;
+  private final String orderVariable;
+  private final int pageSize;
+
+  private final QueryResult rows = new QueryResult(Collections.emptyList());
+  private final AtomicBoolean done = new AtomicBoolean();
+
+  /**
+   * @param runner runs a query given its sparql and name
+   */
+  public PagedQuery(QueryScheduler scheduler, BiFunction<String, String, Optional<QueryResult>> runner,
+                    String sparql, String sparqlName, String orderVariable, int pageSize) {
+    this.scheduler = scheduler;
+    this.runner = runner;
+    this.sparql = sparql;
+    this.sparqlName = sparqlName;
+    this.orderVariable = orderVariable;
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * @return all rows of all pages, or empty if any page failed: the partitions of a failed page would be missing without notice
+   */
+  public CompletableFuture<Optional<QueryResult>> submit() {
+    return collect(0, submitPage(0));
+  }
+
+  private CompletableFuture<Optional<QueryResult>> submitPage(int page) {
+    String pageName = sparqlName + " (page " + (page + 1) + ")";
+    return scheduler.submit(() -> done.get() ? Optional.empty()
+                                             : runner.apply(getPageSparql(sparql, orderVariable, pageSize, (long) page * pageSize), pageName));
+  }
+
+  private CompletableFuture<Optional<QueryResult>> collect(int page, CompletableFuture<Optional<QueryResult>> current) {
+    CompletableFuture<Optional<QueryResult>> next = submitPage(page + 1);
+
+    return current.thenCompose(result -> {
+      if (!result.isPresent()) {
+        if (page > 0) log.warn("Page {} of '{}' failed, dropping the {} rows of the previous pages.", page + 1, sparqlName, rows.size());
+        return finish(next, Optional.empty());
+      }
+
+      rows.addVariables(result.get().getVariables());
+      rows.addAll(result.get());
+      if (result.get().size() < pageSize) return finish(next, Optional.of(rows));
+
+      return collect(page + 1, next);
+    });
+  }
+
+  /**
+   * Completes once the page fetched ahead is no longer running, it is skipped if it did not start yet.
+   */
+  private CompletableFuture<Optional<QueryResult>> finish(CompletableFuture<Optional<QueryResult>> next, Optional<QueryResult> result) {
+    done.set(true);
+    return next.handle((ignored, e) -> result);
+  }
+}
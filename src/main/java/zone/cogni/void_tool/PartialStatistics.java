@@ -0,0 +1,465 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Statistics of one shard of a dump, written by a worker with --shard and merged with the other shards with --merge.
+ * <p>
+ * Shards hold the triples of disjoint sets of subjects, so triple, entity and subject counts are summed.
+ * Distinct objects are shared between shards: they are kept as HyperLogLog sketches when approximate,
+ * else as sorted runs of 64 bit hashes that are merged from disk, exact up to hash collisions.
+ * Classes and properties are keyed like {@link DumpStatistics#key}, so blank node classes count but get no partition.
+ */
+public class PartialStatistics {
+
+  private static final String magic = "void-partial-statistics-1";
+  private static final int maxRunSize = 1 << 22;
+
+  private final int shard;
+  private final int shards;
+  private final boolean approximate;
+  private final int precision;
+
+  private final Partition dataset;
+  private final Map<String, String> exampleResources = new LinkedHashMap<>();
+  private final Map<String, Partition> classPartitions = new TreeMap<>();
+  private final Map<String, Partition> propertyPartitions = new TreeMap<>();
+  private int mergedShards = 1;
+
+  /**
+   * @param precision of the sketches, 0 when exact
+   */
+  public PartialStatistics(int shard, int shards, int precision) {
+    this.shard = shard;
+    this.shards = shards;
+    this.approximate = precision > 0;
+    this.precision = precision;
+    this.dataset = createPartition();
+  }
+
+  public int getShard() {
+    return shard;
+  }
+
+  public int getShards() {
+    return shards;
+  }
+
+  public boolean isApproximate() {
+    return approximate;
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  public Partition getDataset() {
+    return dataset;
+  }
+
+  public Partition getClassPartition(String type) {
+    return classPartitions.computeIfAbsent(type, key -> createPartition());
+  }
+
+  public Partition getPropertyPartition(String property) {
+    return propertyPartitions.computeIfAbsent(property, key -> createPartition());
+  }
+
+  public void addExampleResource(String type, String uri) {
+    exampleResources.putIfAbsent(type, uri);
+  }
+
+  private Partition createPartition() {
+    return new Partition(approximate ? new HyperLogLog(precision) : null);
+  }
+
+  /**
+   * Adds the statistics of another shard of the same dump.
+   */
+  public void merge(PartialStatistics other) {
+    dataset.merge(other.dataset);
+    other.exampleResources.forEach(exampleResources::putIfAbsent);
+    other.classPartitions.forEach((type, partition) -> getClassPartition(type).merge(partition));
+    other.propertyPartitions.forEach((property, partition) -> getPropertyPartition(property).merge(partition));
+    mergedShards += other.mergedShards;
+  }
+
+  /**
+   * Fills the VoID with the same statistics as {@link DumpStatistics#fill} for the whole dump.
+   */
+  public void fill(VoidModelBuilder voidModelBuilder) {
+    voidModelBuilder.addComment("Merged from " + mergedShards + " shards.");
+    if (approximate) voidModelBuilder.addApproximationComment(precision);
+
+    exampleResources.values().forEach(voidModelBuilder::addExampleResource); // 4.1
+
+    classPartitions.keySet().stream() // 4.3
+            .filter(DumpStatistics::isUriKey)
+            .forEach(voidModelBuilder::addVocabularyTerm);
+    propertyPartitions.keySet().forEach(voidModelBuilder::addVocabularyTerm);
+
+    voidModelBuilder.addDatasetStatistic("triples", dataset.triples); // 4.6
+    voidModelBuilder.addDatasetStatistic("entities", dataset.entities);
+    voidModelBuilder.addDatasetStatistic("classes", classPartitions.size());
+    voidModelBuilder.addDatasetStatistic("properties", propertyPartitions.size());
+    voidModelBuilder.addDatasetStatistic("distinctSubjects", dataset.subjects);
+    voidModelBuilder.addDatasetStatistic("distinctObjects", dataset.countObjects());
+
+    classPartitions.forEach((uri, data) -> { // 4.5
+      if (!DumpStatistics.isUriKey(uri)) return;
+
+      long objects = data.countObjects();
+      voidModelBuilder.addClassStatistic(uri, "triples", data.triples);
+      voidModelBuilder.addClassStatistic(uri, "entities", data.entities);
+      voidModelBuilder.addClassStatistic(uri, "classes", 1);
+      voidModelBuilder.addClassStatistic(uri, "properties", data.terms.size());
+      voidModelBuilder.addClassStatistic(uri, "distinctSubjects", data.entities);
+      if (objects > 0) voidModelBuilder.addClassStatistic(uri, "distinctObjects", objects);
+    });
+
+    propertyPartitions.forEach((uri, data) -> {
+      long objects = data.countObjects();
+      voidModelBuilder.addPropertyStatistic(uri, "triples", data.triples);
+      if (data.entities > 0) voidModelBuilder.addPropertyStatistic(uri, "entities", data.entities);
+      if (!data.terms.isEmpty()) voidModelBuilder.addPropertyStatistic(uri, "classes", data.terms.size());
+      voidModelBuilder.addPropertyStatistic(uri, "properties", 1);
+      voidModelBuilder.addPropertyStatistic(uri, "distinctSubjects", data.subjects);
+      if (objects > 0) voidModelBuilder.addPropertyStatistic(uri, "distinctObjects", objects);
+    });
+  }
+
+  public void write(File file) {
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+      writeString(output, magic);
+      output.writeInt(shard);
+      output.writeInt(shards);
+      output.writeInt(precision);
+
+      dataset.write(output);
+
+      output.writeInt(exampleResources.size());
+      for (Map.Entry<String, String> example : exampleResources.entrySet()) {
+        writeString(output, example.getKey());
+        writeString(output, example.getValue());
+      }
+
+      writePartitions(output, classPartitions);
+      writePartitions(output, propertyPartitions);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to write partial statistics to file '" + file + "'.", e);
+    }
+  }
+
+  private static void writePartitions(DataOutputStream output, Map<String, Partition> partitions) throws IOException {
+    output.writeInt(partitions.size());
+    for (Map.Entry<String, Partition> partition : partitions.entrySet()) {
+      writeString(output, partition.getKey());
+      partition.getValue().write(output);
+    }
+  }
+
+  /**
+   * Reads the counts and sketches, the hashes of exact distinct objects stay in the file until they are counted.
+   */
+  public static PartialStatistics read(File file) {
+    try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+         DataInputStream input = new DataInputStream(counting)) {
+      if (!magic.equals(readString(input))) throw new IllegalArgumentException("File '" + file + "' is not a partial statistics file.");
+
+      PartialStatistics result = new PartialStatistics(input.readInt(), input.readInt(), input.readInt());
+      Reader reader = new Reader(file, counting, input);
+
+      result.dataset.read(reader);
+
+      int examples = input.readInt();
+      for (int i = 0; i < examples; i++) {
+        result.exampleResources.put(readString(input), readString(input));
+      }
+
+      readPartitions(reader, result.classPartitions, result);
+      readPartitions(reader, result.propertyPartitions, result);
+      return result;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to read partial statistics from file '" + file + "'.", e);
+    }
+  }
+
+  private static void readPartitions(Reader reader, Map<String, Partition> partitions, PartialStatistics statistics) throws IOException {
+    int size = reader.input.readInt();
+    for (int i = 0; i < size; i++) {
+      Partition partition = statistics.createPartition();
+      partitions.put(readString(reader.input), partition);
+      partition.read(reader);
+    }
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Counts of a dataset, class or property partition.
+   * Terms are the properties of a class partition or the classes of a property partition.
+   */
+  public static class Partition {
+
+    private long triples;
+    private long entities;
+    private long subjects;
+    private final Set<String> terms = new TreeSet<>();
+
+    private final HyperLogLog objectSketch;
+    private Consumer<LongConsumer> objectHashes; // exact, while writing
+    private final List<Run> objectRuns = new ArrayList<>(); // exact, once read
+
+    private Partition(HyperLogLog objectSketch) {
+      this.objectSketch = objectSketch;
+    }
+
+    public Partition setCounts(long triples, long entities, long subjects) {
+      this.triples = triples;
+      this.entities = entities;
+      this.subjects = subjects;
+      return this;
+    }
+
+    public Partition addTerm(String term) {
+      terms.add(term);
+      return this;
+    }
+
+    public HyperLogLog getObjectSketch() {
+      return objectSketch;
+    }
+
+    /**
+     * @param objectHashes passes the hash of each distinct object to the consumer, when exact
+     */
+    public Partition setObjectHashes(Consumer<LongConsumer> objectHashes) {
+      this.objectHashes = objectHashes;
+      return this;
+    }
+
+    private void merge(Partition other) {
+      triples += other.triples;
+      entities += other.entities;
+      subjects += other.subjects;
+      terms.addAll(other.terms);
+      if (objectSketch != null) objectSketch.merge(other.objectSketch);
+      objectRuns.addAll(other.objectRuns);
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+      output.writeLong(triples);
+      output.writeLong(entities);
+      output.writeLong(subjects);
+      output.writeInt(terms.size());
+      for (String term : terms) {
+        writeString(output, term);
+      }
+
+      if (objectSketch != null) {
+        objectSketch.write(output);
+        return;
+      }
+
+      // sorted runs of distinct hashes, ended by an empty run
+      RunWriter runWriter = new RunWriter(output);
+      if (objectHashes != null) objectHashes.accept(runWriter);
+      runWriter.flush();
+      output.writeInt(0);
+    }
+
+    private void read(Reader reader) throws IOException {
+      DataInputStream input = reader.input;
+      triples = input.readLong();
+      entities = input.readLong();
+      subjects = input.readLong();
+      int termCount = input.readInt();
+      for (int i = 0; i < termCount; i++) {
+        terms.add(readString(input));
+      }
+
+      if (objectSketch != null) {
+        objectSketch.merge(HyperLogLog.read(input));
+        return;
+      }
+
+      for (int size = input.readInt(); size > 0; size = input.readInt()) {
+        objectRuns.add(new Run(reader.file, reader.counting.getByteCount(), size));
+        IOUtils.skipFully(input, 8L * size);
+      }
+    }
+
+    /**
+     * Merges the runs of all shards in one pass, with a stream per run.
+     */
+    private long countObjects() {
+      if (objectSketch != null) return objectSketch.count();
+
+      PriorityQueue<RunReader> queue = new PriorityQueue<>((left, right) -> Long.compare(left.current, right.current));
+      try {
+        for (Run run : objectRuns) {
+          RunReader runReader = new RunReader(run);
+          if (runReader.next()) queue.add(runReader);
+          else runReader.close();
+        }
+
+        long result = 0;
+        boolean first = true;
+        long previous = 0;
+        while (!queue.isEmpty()) {
+          RunReader runReader = queue.poll();
+          if (first || runReader.current != previous) result++;
+          first = false;
+          previous = runReader.current;
+
+          if (runReader.next()) queue.add(runReader);
+          else runReader.close();
+        }
+        return result;
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException("Failed to read distinct objects of partial statistics.", e);
+      }
+      finally {
+        queue.forEach(RunReader::close);
+      }
+    }
+  }
+
+  private static class Reader {
+
+    private final File file;
+    private final CountingInputStream counting;
+    private final DataInputStream input;
+
+    private Reader(File file, CountingInputStream counting, DataInputStream input) {
+      this.file = file;
+      this.counting = counting;
+      this.input = input;
+    }
+  }
+
+  /**
+   * Buffers hashes and writes them as a sorted run without duplicates when the buffer is full.
+   */
+  private static class RunWriter implements LongConsumer {
+
+    private final DataOutputStream output;
+    private long[] buffer = new long[1024];
+    private int size;
+
+    private RunWriter(DataOutputStream output) {
+      this.output = output;
+    }
+
+    @Override
+    public void accept(long hash) {
+      if (size == buffer.length) {
+        if (size == maxRunSize) flush();
+        else buffer = Arrays.copyOf(buffer, Math.min(maxRunSize, size * 2));
+      }
+      buffer[size++] = hash;
+    }
+
+    private void flush() {
+      if (size == 0) return;
+
+      Arrays.sort(buffer, 0, size);
+      int distinct = 1;
+      for (int i = 1; i < size; i++) {
+        if (buffer[i] != buffer[distinct - 1]) buffer[distinct++] = buffer[i];
+      }
+
+      try {
+        output.writeInt(distinct);
+        for (int i = 0; i < distinct; i++) {
+          output.writeLong(buffer[i]);
+        }
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      size = 0;
+    }
+  }
+
+  private static class Run {
+
+    private final File file;
+    private final long offset;
+    private final int size;
+
+    private Run(File file, long offset, int size) {
+      this.file = file;
+      this.offset = offset;
+      this.size = size;
+    }
+  }
+
+  private static class RunReader {
+
+    private final DataInputStream input;
+    private int remaining;
+    private long current;
+
+    private RunReader(Run run) throws IOException {
+      FileInputStream file = new FileInputStream(run.file);
+      try {
+        IOUtils.skipFully(file, run.offset);
+      }
+      catch (IOException e) {
+        file.close();
+        throw e;
+      }
+      input = new DataInputStream(new BufferedInputStream(file, 1 << 13));
+      remaining = run.size;
+    }
+
+    private boolean next() throws IOException {
+      if (remaining == 0) return false;
+
+      current = input.readLong();
+      remaining--;
+      return true;
+    }
+
+    private void close() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+}
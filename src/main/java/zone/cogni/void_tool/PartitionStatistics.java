@@ -0,0 +1,85 @@
+package zone.cogni.void_tool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Statistics of class or property partitions, stored per column.
+ * Partition terms are interned to int ids, each void property is a long column indexed by id, {@link #missing} when not set.
+ */
+public class PartitionStatistics {
+
+  public static final List<String> voidProperties = Collections.unmodifiableList(Arrays.asList("triples", "entities",
+                                                                                               "classes", "properties",
+                                                                                               "distinctSubjects", "distinctObjects"));
+  public static final long missing = -1;
+
+  public static int getColumn(String voidProperty) {
+    int column = voidProperties.indexOf(voidProperty);
+    if (column < 0) throw new IllegalArgumentException("Unknown void property '" + voidProperty + "'.");
+    return column;
+  }
+
+  private final Map<String, Integer> ids = new HashMap<>();
+  private String[] terms = new String[16];
+  private final long[][] columns = new long[voidProperties.size()][];
+
+  public PartitionStatistics() {
+    for (int column = 0; column < columns.length; column++) {
+      columns[column] = new long[terms.length];
+      Arrays.fill(columns[column], missing);
+    }
+  }
+
+  public void set(String term, String voidProperty, long value) {
+    int id = getId(term); // can grow the columns
+    columns[getColumn(voidProperty)][id] = value;
+  }
+
+  public int size() {
+    return ids.size();
+  }
+
+  public String getTerm(int id) {
+    return terms[id];
+  }
+
+  public long get(int id, int column) {
+    return columns[column][id];
+  }
+
+  /**
+   * @return ids ordered by term, for a stable output
+   */
+  public int[] getSortedIds() {
+    return IntStream.range(0, size()).boxed()
+            .sorted(Comparator.comparing(id -> terms[id]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+  }
+
+  private int getId(String term) {
+    Integer id = ids.get(term);
+    if (id != null) return id;
+
+    int newId = ids.size();
+    if (newId == terms.length) grow();
+    terms[newId] = term;
+    ids.put(term, newId);
+    return newId;
+  }
+
+  private void grow() {
+    int length = terms.length * 2;
+    terms = Arrays.copyOf(terms, length);
+    for (int column = 0; column < columns.length; column++) {
+      columns[column] = Arrays.copyOf(columns[column], length);
+      Arrays.fill(columns[column], length / 2, length, missing);
+    }
+  }
+}
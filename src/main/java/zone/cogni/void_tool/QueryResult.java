@@ -1,27 +1,106 @@
 package zone.cogni.void_tool;
 
+import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.RDFNode;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.stream.Stream;
 
+/**
+ * Rows of a SELECT query, a row is an array of nodes in the order of the variables with null where a variable is unbound.
+ */
 public class QueryResult {
 
-  private final Set<String> variables;
-  private final List<Map<String, RDFNode>> rows;
+  private final List<String> variables = new ArrayList<>();
+  private final Map<String, Integer> columns = new HashMap<>();
+  private final List<Node[]> rows = new ArrayList<>();
 
-  public QueryResult(Set<String> variables, List<Map<String, RDFNode>> rows) {
-    this.variables = variables;
-    this.rows = rows;
+  public QueryResult(Collection<String> variables) {
+    addVariables(variables);
   }
 
-  public Set<String> getVariables() {
-    return variables;
+  /**
+   * Adds the variables that are not there yet, after the existing ones.
+   */
+  public void addVariables(Collection<String> variables) {
+    variables.forEach(this::getColumn);
   }
 
-  public List<Map<String, RDFNode>> getRows() {
-    return rows;
+  public List<String> getVariables() {
+    return Collections.unmodifiableList(variables);
+  }
+
+  public int size() {
+    return rows.size();
+  }
+
+  public Row getRow(int index) {
+    return new Row(rows.get(index));
+  }
+
+  public Stream<Row> rows() {
+    return rows.stream().map(Row::new);
+  }
+
+  /**
+   * @param values in the order of the variables
+   */
+  public void add(Node... values) {
+    rows.add(values);
+  }
+
+  /**
+   * Variables not seen before are added.
+   */
+  public void add(Map<String, RDFNode> row) {
+    Node[] values = new Node[variables.size()];
+    for (Map.Entry<String, RDFNode> entry : row.entrySet()) {
+      int column = getColumn(entry.getKey());
+      if (column >= values.length) values = Arrays.copyOf(values, variables.size());
+      values[column] = entry.getValue().asNode();
+    }
+    rows.add(values);
+  }
+
+  /**
+   * @param row of this or another result, matched on variable names
+   */
+  public void add(Row row) {
+    if (row.getResult().variables.equals(variables)) {
+      rows.add(row.values);
+      return;
+    }
+
+    Node[] values = new Node[variables.size()];
+    List<String> rowVariables = row.getResult().variables;
+    for (int i = 0; i < rowVariables.size(); i++) {
+      Node value = row.get(rowVariables.get(i));
+      if (value == null) continue;
+
+      int column = getColumn(rowVariables.get(i));
+      if (column >= values.length) values = Arrays.copyOf(values, variables.size());
+      values[column] = value;
+    }
+    rows.add(values);
+  }
+
+  public void addAll(QueryResult other) {
+    other.rows().forEach(this::add);
+  }
+
+  private int getColumn(String variable) {
+    Integer column = columns.get(variable);
+    if (column != null) return column;
+
+    columns.put(variable, variables.size());
+    variables.add(variable);
+    return variables.size() - 1;
   }
 
   @Override
@@ -29,8 +108,44 @@ public class QueryResult {
     StringBuilder result = new StringBuilder("QueryResult{");
     result.append("variables=").append(variables);
     result.append(", rows=\n");
-    rows.forEach(row -> result.append("\t\t").append(row).append("\n"));
+    rows.forEach(row -> result.append("\t\t").append(Arrays.toString(row)).append("\n"));
     result.append('}');
     return result.toString();
   }
+
+  public class Row {
+
+    private final Node[] values;
+
+    private Row(Node[] values) {
+      this.values = values;
+    }
+
+    private QueryResult getResult() {
+      return QueryResult.this;
+    }
+
+    /**
+     * @return value of the variable, null when unbound
+     */
+    public Node get(String variable) {
+      Integer column = columns.get(variable);
+      return column == null || column >= values.length ? null : values[column];
+    }
+
+    /**
+     * @return uri of the variable, null when unbound or not a uri
+     */
+    public String getUri(String variable) {
+      Node value = get(variable);
+      return value != null && value.isURI() ? value.getURI() : null;
+    }
+
+    /**
+     * @return numeric literal value of the variable, typically a count
+     */
+    public long getLong(String variable) {
+      return ((Number) get(variable).getLiteralValue()).longValue();
+    }
+  }
 }
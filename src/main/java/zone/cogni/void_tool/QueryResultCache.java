@@ -0,0 +1,260 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.jena.graph.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On disk cache of query results, a rerun after an interrupted run only executes the queries that did not succeed yet.
+ * <p>
+ * An entry is keyed by a hash of the endpoint, the use graphs flag and the SPARQL text.
+ * It is written to a temporary file and then moved in place, so an interrupted write never leaves a partial entry.
+ * The format is gzipped binary: variables, then per row per variable a term kind and its strings,
+ * strings seen before in the entry are written as a reference.
+ */
+public class QueryResultCache {
+
+  private static final Logger log = LoggerFactory.getLogger(QueryResultCache.class);
+
+  private static final int magic = 0x564f4944;
+  private static final int version = 1;
+
+  private static final int unbound = 0;
+  private static final int uri = 1;
+  private static final int blankNode = 2;
+  private static final int literal = 3;
+  private static final int languageLiteral = 4;
+  private static final int typedLiteral = 5;
+
+  private final Path directory;
+  private final long timeToLiveInMillis;
+  private final boolean refresh;
+
+  /**
+   * @param refresh true to execute all queries again, their results still replace the cached ones
+   */
+  public QueryResultCache(String directory, long timeToLiveInHours, boolean refresh) {
+    this.directory = Paths.get(directory);
+    this.timeToLiveInMillis = timeToLiveInHours * 3600 * 1000;
+    this.refresh = refresh;
+    try {
+      Files.createDirectories(this.directory);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Cannot create cache directory '" + directory + "'.", e);
+    }
+  }
+
+  public Optional<QueryResult> get(String endpoint, boolean useGraphs, String sparql, String sparqlName) {
+    if (refresh) return Optional.empty();
+
+    Path file = getFile(endpoint, useGraphs, sparql);
+    try {
+      if (!Files.exists(file)) return Optional.empty();
+      if (Files.getLastModifiedTime(file).toMillis() + timeToLiveInMillis < System.currentTimeMillis()) return Optional.empty();
+
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+        QueryResult queryResult = read(input);
+        log.info("Cached result for '{}'.", sparqlName);
+        return Optional.of(queryResult);
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      log.warn("Ignoring cached result for '{}'. {}", sparqlName, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  public void put(String endpoint, boolean useGraphs, String sparql, QueryResult queryResult) {
+    Path file = getFile(endpoint, useGraphs, sparql);
+    try {
+      Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+        write(output, queryResult);
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      log.warn("Failed to cache result in '{}'. {}", file, e.getMessage());
+    }
+  }
+
+  private Path getFile(String endpoint, boolean useGraphs, String sparql) {
+    return directory.resolve(DigestUtils.sha256Hex(endpoint + "\n" + useGraphs + "\n" + sparql) + ".bin");
+  }
+
+  private static void write(DataOutputStream output, QueryResult queryResult) throws IOException {
+    StringWriter strings = new StringWriter(output);
+    List<String> variables = new ArrayList<>(queryResult.getVariables());
+
+    output.writeInt(magic);
+    output.writeInt(version);
+    writeNumber(output, variables.size());
+    for (String variable : variables) {
+      strings.write(variable);
+    }
+
+    writeNumber(output, queryResult.size());
+    for (int i = 0; i < queryResult.size(); i++) {
+      QueryResult.Row row = queryResult.getRow(i);
+      for (String variable : variables) {
+        writeTerm(output, strings, row.get(variable));
+      }
+    }
+  }
+
+  private static void writeTerm(DataOutputStream output, StringWriter strings, Node node) throws IOException {
+    if (node == null) {
+      output.writeByte(unbound);
+    }
+    else if (node.isURI()) {
+      output.writeByte(uri);
+      strings.write(node.getURI());
+    }
+    else if (node.isBlank()) {
+      output.writeByte(blankNode);
+      strings.write(node.getBlankNodeLabel());
+    }
+    else if (!node.getLiteralLanguage().isEmpty()) {
+      output.writeByte(languageLiteral);
+      strings.write(node.getLiteralLexicalForm());
+      strings.write(node.getLiteralLanguage());
+    }
+    else if (node.getLiteralDatatypeURI() != null) {
+      output.writeByte(typedLiteral);
+      strings.write(node.getLiteralLexicalForm());
+      strings.write(node.getLiteralDatatypeURI());
+    }
+    else {
+      output.writeByte(literal);
+      strings.write(node.getLiteralLexicalForm());
+    }
+  }
+
+  private static QueryResult read(DataInputStream input) throws IOException {
+    if (input.readInt() != magic || input.readInt() != version) throw new IOException("Unknown cache format.");
+
+    StringReader strings = new StringReader(input);
+    List<String> variables = new ArrayList<>();
+    long variableCount = readNumber(input);
+    for (int i = 0; i < variableCount; i++) {
+      variables.add(strings.read());
+    }
+
+    long rowCount = readNumber(input);
+    QueryResult queryResult = new QueryResult(variables);
+    for (long i = 0; i < rowCount; i++) {
+      Node[] values = new Node[variables.size()];
+      for (int column = 0; column < values.length; column++) {
+        values[column] = readTerm(input, strings);
+      }
+      queryResult.add(values);
+    }
+    return queryResult;
+  }
+
+  private static Node readTerm(DataInputStream input, StringReader strings) throws IOException {
+    int kind = input.readByte();
+    switch (kind) {
+      case unbound:
+        return null;
+      case uri:
+        return ResultTerms.uri(strings.read()).asNode();
+      case blankNode:
+        return ResultTerms.blankNode(strings.read()).asNode();
+      case literal:
+        return ResultTerms.literal(strings.read(), null, null).asNode();
+      case languageLiteral:
+        return ResultTerms.literal(strings.read(), null, strings.read()).asNode();
+      case typedLiteral:
+        return ResultTerms.literal(strings.read(), strings.read(), null).asNode();
+      default:
+        throw new IOException("Unknown term kind " + kind + ".");
+    }
+  }
+
+  private static void writeNumber(DataOutputStream output, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      output.writeByte((int) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    output.writeByte((int) value);
+  }
+
+  private static long readNumber(DataInputStream input) throws IOException {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      int next = input.readUnsignedByte();
+      value |= (long) (next & 0x7f) << shift;
+      if ((next & 0x80) == 0) return value;
+    }
+  }
+
+  /**
+   * Writes 0 and the UTF-8 bytes of a new string, or the index + 1 of a string written before.
+   */
+  private static class StringWriter {
+
+    private final DataOutputStream output;
+    private final Map<String, Long> indexes = new HashMap<>();
+
+    private StringWriter(DataOutputStream output) {
+      this.output = output;
+    }
+
+    private void write(String value) throws IOException {
+      Long index = indexes.get(value);
+      if (index != null) {
+        writeNumber(output, index + 1);
+        return;
+      }
+
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeNumber(output, 0);
+      writeNumber(output, bytes.length);
+      output.write(bytes);
+      indexes.put(value, (long) indexes.size());
+    }
+  }
+
+  private static class StringReader {
+
+    private final DataInputStream input;
+    private final List<String> strings = new ArrayList<>();
+
+    private StringReader(DataInputStream input) {
+      this.input = input;
+    }
+
+    private String read() throws IOException {
+      long reference = readNumber(input);
+      if (reference > 0) return strings.get((int) (reference - 1));
+
+      byte[] bytes = new byte[(int) readNumber(input)];
+      input.readFully(bytes);
+      String value = new String(bytes, StandardCharsets.UTF_8);
+      strings.add(value);
+      return value;
+    }
+  }
+}
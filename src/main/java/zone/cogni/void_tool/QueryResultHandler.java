@@ -0,0 +1,17 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.rdf.model.RDFNode;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Receives a SPARQL result while it is being parsed: first the variables, then one call per row.
+ */
+public interface QueryResultHandler {
+
+  void variables(Set<String> variables);
+
+  void row(Map<String, RDFNode> row);
+
+}
@@ -0,0 +1,44 @@
+package zone.cogni.void_tool;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs queries as independent tasks on a fixed number of worker threads.
+ * Results are handed back as futures so callers can merge them in a fixed order.
+ */
+public class QueryScheduler implements AutoCloseable {
+
+  private final ExecutorService executor;
+
+  public QueryScheduler(int parallelism) {
+    if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism + ".");
+
+    executor = Executors.newFixedThreadPool(parallelism, new QueryThreadFactory());
+  }
+
+  public <T> CompletableFuture<T> submit(Supplier<T> task) {
+    return CompletableFuture.supplyAsync(task, executor);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private static class QueryThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "void-query-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
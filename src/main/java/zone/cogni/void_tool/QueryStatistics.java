@@ -0,0 +1,117 @@
+package zone.cogni.void_tool;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Measurements of one query execution, or of one cached result.
+ * Times are in milliseconds, -1 when not reached.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryStatistics {
+
+  private final String name;
+  private final long start = System.nanoTime();
+
+  private boolean success;
+  private boolean cached;
+  private long timeToFirstByte = -1;
+  private long latency = -1;
+  private long parseTime = -1;
+  private long bytes;
+  private long rows;
+  private int retries;
+  private String failure;
+
+  public QueryStatistics(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @return resource name of the query template, without page, sample, batch, blank nodes or graph,
+   *         so the metrics tagged with it stay one per template however many queries run
+   */
+  public String getQuery() {
+    return name.contains(".sparql") ? StringUtils.substringBefore(name, ".sparql") + ".sparql" : StringUtils.substringBefore(name, " ");
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isSuccess() {
+    return success;
+  }
+
+  public boolean isCached() {
+    return cached;
+  }
+
+  public long getTimeToFirstByteMillis() {
+    return timeToFirstByte;
+  }
+
+  public long getLatencyMillis() {
+    return latency;
+  }
+
+  public long getParseMillis() {
+    return parseTime;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public int getRetries() {
+    return retries;
+  }
+
+  public String getFailure() {
+    return failure;
+  }
+
+  void firstByte() {
+    timeToFirstByte = sinceStart();
+  }
+
+  void parsed(long parseNanos, long bytes, long rows) {
+    this.parseTime = parseNanos / 1_000_000;
+    this.bytes = bytes;
+    this.rows = rows;
+  }
+
+  void retry() {
+    retries++;
+  }
+
+  void succeeded() {
+    success = true;
+    failure = null;
+    latency = sinceStart();
+  }
+
+  /**
+   * Keeps the cause of the latest attempt, earlier attempts may have been retried.
+   */
+  void failed(String failure) {
+    success = false;
+    this.failure = failure;
+    latency = sinceStart();
+  }
+
+  void cached(long rows) {
+    success = true;
+    cached = true;
+    this.rows = rows;
+    latency = sinceStart();
+  }
+
+  private long sinceStart() {
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+}
@@ -0,0 +1,37 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SPARQL templates on the classpath, each read on first use and kept for the rest of the run.
+ */
+final class QueryTemplates {
+
+  private static final Map<String, String> templates = new ConcurrentHashMap<>();
+
+  private QueryTemplates() {
+  }
+
+  /**
+   * @param resource path on the classpath, for example triples/4.6/triples.sparql
+   */
+  static String get(String resource) {
+    return templates.computeIfAbsent(resource, QueryTemplates::read);
+  }
+
+  private static String read(String resource) {
+    try (InputStream input = QueryTemplates.class.getClassLoader().getResourceAsStream(resource)) {
+      if (input == null) throw new IllegalArgumentException("Query '" + resource + "' not found on the classpath.");
+      return IOUtils.toString(input, "UTF-8");
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package zone.cogni.void_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Results of one run by query name, each fetched at most once.
+ * A result that can be computed from another result of the run is derived from it when that one is fetched anyway,
+ * and only queried itself when that one failed, is not part of the run or can not be derived from.
+ * <p>
+ * Methods are synchronized instead of using computeIfAbsent, as starting a query can fetch the result it depends on.
+ */
+public class ResultRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(ResultRegistry.class);
+
+  private final Map<String, Supplier<CompletableFuture<Optional<QueryResult>>>> queries = new HashMap<>();
+  private final Map<String, CompletableFuture<Optional<QueryResult>>> fetched = new HashMap<>();
+  private final Map<String, Derivation> derivations = new HashMap<>();
+  private final Map<String, CompletableFuture<Optional<QueryResult>>> derived = new HashMap<>();
+
+  /**
+   * @param query started on first use only
+   */
+  public synchronized void register(String name, Supplier<CompletableFuture<Optional<QueryResult>>> query) {
+    queries.put(name, query);
+  }
+
+  /**
+   * Registers a result that is already started.
+   */
+  public synchronized void put(String name, CompletableFuture<Optional<QueryResult>> result) {
+    fetched.put(name, result);
+  }
+
+  /**
+   * @param derivation computes the result from a successful result of the source, empty when it can not
+   */
+  public synchronized void derive(String name, String source, Function<QueryResult, Optional<QueryResult>> derivation) {
+    derivations.put(name, new Derivation(source, derivation));
+  }
+
+  /**
+   * @return the result of the query itself, for strategies that need it before the source of a derivation is known
+   */
+  public synchronized CompletableFuture<Optional<QueryResult>> fetch(String name) {
+    CompletableFuture<Optional<QueryResult>> result = fetched.get(name);
+    if (result != null) return result;
+
+    result = queries.get(name).get();
+    fetched.put(name, result);
+    return result;
+  }
+
+  /**
+   * @return the derived result if the source is part of the run and the result was not fetched already, else the fetched one
+   */
+  public synchronized CompletableFuture<Optional<QueryResult>> get(String name) {
+    Derivation derivation = derivations.get(name);
+    if (fetched.containsKey(name) || derivation == null || !fetched.containsKey(derivation.source)) return fetch(name);
+
+    CompletableFuture<Optional<QueryResult>> result = derived.get(name);
+    if (result != null) return result;
+
+    result = fetched.get(derivation.source).thenCompose(source -> {
+      Optional<QueryResult> derivedResult = source.flatMap(derivation.derivation);
+      if (!derivedResult.isPresent()) {
+        log.warn("Can not derive '{}' from '{}', running its own query.", name, derivation.source);
+        return fetch(name);
+      }
+
+      log.info("Derived '{}' from '{}'.", name, derivation.source);
+      return CompletableFuture.completedFuture(derivedResult);
+    });
+    derived.put(name, result);
+    return result;
+  }
+
+  private static class Derivation {
+
+    private final String source;
+    private final Function<QueryResult, Optional<QueryResult>> derivation;
+
+    private Derivation(String source, Function<QueryResult, Optional<QueryResult>> derivation) {
+      this.source = source;
+      this.derivation = derivation;
+    }
+  }
+}
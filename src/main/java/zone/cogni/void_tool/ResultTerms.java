@@ -0,0 +1,40 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+
+final class ResultTerms {
+
+  private static final Model nodes = ModelFactory.createDefaultModel();
+
+  private ResultTerms() {
+  }
+
+  static RDFNode uri(String uri) {
+    return asRdfNode(NodeFactory.createURI(uri));
+  }
+
+  static RDFNode blankNode(String label) {
+    return asRdfNode(NodeFactory.createBlankNode(label));
+  }
+
+  static RDFNode literal(String lexicalForm, String datatype, String language) {
+    if (StringUtils.isNotBlank(language)) return asRdfNode(NodeFactory.createLiteral(lexicalForm, language));
+    if (StringUtils.isBlank(datatype)) return asRdfNode(NodeFactory.createLiteral(lexicalForm));
+    return asRdfNode(NodeFactory.createLiteral(lexicalForm, TypeMapper.getInstance().getSafeTypeByName(datatype)));
+  }
+
+  static Node integer(long value) {
+    return NodeFactory.createLiteral(String.valueOf(value), XSDDatatype.XSDinteger);
+  }
+
+  static RDFNode asRdfNode(Node node) {
+    return nodes.asRDFNode(node);
+  }
+}
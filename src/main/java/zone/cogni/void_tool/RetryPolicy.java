@@ -0,0 +1,40 @@
+package zone.cogni.void_tool;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How often and after how long a failed query is tried again.
+ * Delays grow exponentially from the base delay and are drawn at random below that bound (full jitter),
+ * so queries that failed together do not all come back at the same moment.
+ */
+public class RetryPolicy {
+
+  private static final long maxDelayMillis = 60_000;
+
+  private final int retries;
+  private final long baseDelayMillis;
+
+  public RetryPolicy(int retries, long baseDelayMillis) {
+    this.retries = retries;
+    this.baseDelayMillis = baseDelayMillis;
+  }
+
+  public int getRetries() {
+    return retries;
+  }
+
+  /**
+   * @param retry 0 for the first retry
+   */
+  public long getDelayMillis(int retry) {
+    long bound = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retry, 20));
+    return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+  }
+
+  /**
+   * Server errors, timeouts and too many requests are worth another try, other client errors are not.
+   */
+  public static boolean isRetryable(int statusCode) {
+    return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+  }
+}
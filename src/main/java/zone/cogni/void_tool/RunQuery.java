@@ -1,37 +1,15 @@
 package zone.cogni.void_tool;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
-import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpHeaders;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.util.EntityUtils;
-import org.apache.jena.datatypes.RDFDatatype;
-import org.apache.jena.datatypes.TypeMapper;
 import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.ResourceFactory;
-import org.json.JSONObject;
-import org.json.XML;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.web.util.UriUtils;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -41,29 +19,40 @@ public class RunQuery implements Supplier<Optional<QueryResult>> {
 
   private static final Logger log = LoggerFactory.getLogger(RunQuery.class);
 
-  public static Optional<QueryResult> runFromResource(int timeout, String sparqlEndpoint, boolean useGraphs, String queryResource) {
+  public static Optional<QueryResult> runFromResource(SparqlEndpointClient client, RunReport report, RetryPolicy retryPolicy, int timeout,
+                                                      String sparqlEndpoint, boolean useGraphs, String queryResource) {
     queryResource = (useGraphs ? "quads" : "triples") + "/" + queryResource;
-    return runFromSparql(timeout, sparqlEndpoint, readQuery(queryResource), queryResource);
+    return runFromSparql(client, report, retryPolicy, timeout, sparqlEndpoint, QueryTemplates.get(queryResource), queryResource);
   }
 
-  public static Optional<QueryResult> runFromSparql(int timeout, String sparqlEndpoint, String sparql, String sparqlName) {
-    return new RunQuery(timeout, sparqlEndpoint, sparql, sparqlName).get();
+  public static Optional<QueryResult> runFromSparql(SparqlEndpointClient client, RunReport report, RetryPolicy retryPolicy, int timeout,
+                                                    String sparqlEndpoint, String sparql, String sparqlName) {
+    return new RunQuery(client, report, retryPolicy, timeout, sparqlEndpoint, sparql, sparqlName).get();
   }
 
-  private static String readQuery(String resource) {
-    try {
-      return IOUtils.toString(new ClassPathResource(resource).getInputStream(), "UTF-8");
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+  /**
+   * Streams the rows of the result to the handler without keeping them in memory.
+   *
+   * @return false if the query failed, the handler can then have received part of the rows
+   */
+  public static boolean streamFromSparql(SparqlEndpointClient client, RunReport report, RetryPolicy retryPolicy, int timeout, String sparqlEndpoint,
+                                         String sparql, String sparqlName, QueryResultHandler handler) {
+    return new RunQuery(client, report, retryPolicy, timeout, sparqlEndpoint, sparql, sparqlName).run(handler);
   }
+
+  private final SparqlEndpointClient client;
+  private final RunReport report;
+  private final RetryPolicy retryPolicy;
   private final int timeout;
   private final String sparqlEndpoint;
   private final String sparql;
   private final String sparqlName;
 
-  private RunQuery(int timeout, String sparqlEndpoint, String sparql, String sparqlName) {
+  private RunQuery(SparqlEndpointClient client, RunReport report, RetryPolicy retryPolicy, int timeout, String sparqlEndpoint, String sparql,
+                   String sparqlName) {
+    this.client = client;
+    this.report = report;
+    this.retryPolicy = retryPolicy;
     this.timeout = timeout;
     this.sparqlEndpoint = sparqlEndpoint;
     this.sparql = sparql;
@@ -71,169 +60,147 @@ public class RunQuery implements Supplier<Optional<QueryResult>> {
   }
 
   @Override public Optional<QueryResult> get() {
-    try {
-      String bodyAsString = getRequestResultXmlAsString();
-//      log.info(bodyAsString);
-      if (bodyAsString == null) return Optional.empty();
-
-      JsonNode jsonNode = convertXmlToJson(bodyAsString);
-      if (jsonNode.size() == 0) {
-        log.info("Query failed.");
-        log.debug("Query returned \n{}", bodyAsString.substring(0, Math.min(1024, bodyAsString.length())));
-        return Optional.empty();
-      }
-
-      return Optional.of(new QueryResult(getVariables(jsonNode), getResults(jsonNode)));
-    }
-    catch (Exception e) {
-      log.warn("Failed query '{}'. {}", sparqlName, e.getMessage());
-      log.debug("Stacktrace", e);
-      return Optional.empty();
-    }
+    QueryResultCollector collector = new QueryResultCollector();
+    return run(collector) ? Optional.of(collector.getQueryResult()) : Optional.empty();
   }
 
-  private JsonNode convertXmlToJson(String bodyAsString) {
+  /**
+   * Failures that look transient are retried, unless rows were already passed on to the handler.
+   */
+  private boolean run(QueryResultHandler handler) {
+    QueryStatistics statistics = report.start(sparqlName);
+    EndpointThrottle throttle = client.getThrottle(sparqlEndpoint);
+    RowCounter rowCounter = new RowCounter(handler);
     try {
-      JSONObject jObject = XML.toJSONObject(bodyAsString);
-      ObjectMapper xmlToJsonMapper = new ObjectMapper();
-      xmlToJsonMapper.enable(SerializationFeature.INDENT_OUTPUT);
-
-      Object json = xmlToJsonMapper.readValue(jObject.toString(), Object.class);
-      String output = xmlToJsonMapper.writeValueAsString(json);
-
-      ObjectMapper treeMapper = new ObjectMapper();
-      return treeMapper.readTree(output);
+      for (int retry = 0; ; retry++) {
+        Outcome outcome = runOnce(rowCounter, statistics, throttle);
+        if (outcome == Outcome.success) {
+          statistics.succeeded();
+          return true;
+        }
+        if (outcome == Outcome.failure || retry >= retryPolicy.getRetries() || rowCounter.rows > 0) return false;
+
+        long delay = retryPolicy.getDelayMillis(retry);
+        log.warn("Retrying '{}' in {}ms, retry {} of {}.", sparqlName, delay, retry + 1, retryPolicy.getRetries());
+        statistics.retry();
+        Thread.sleep(delay);
+      }
     }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      statistics.failed("Interrupted");
+      return false;
+    }
+    finally {
+      report.finish(statistics);
     }
   }
 
-  private CloseableHttpClient getHttpClient() {
-    int connectionRequestTimeout = timeout * 1000;
-    RequestConfig requestConfig = RequestConfig.custom().
-            setConnectionRequestTimeout(connectionRequestTimeout).setConnectTimeout(connectionRequestTimeout).setSocketTimeout(connectionRequestTimeout).build();
-    return HttpClientBuilder.create().setDefaultRequestConfig(requestConfig).build();
-  }
+  private Outcome runOnce(RowCounter rowCounter, QueryStatistics statistics, EndpointThrottle throttle) throws InterruptedException {
+    throttle.acquire();
 
-  private String getRequestResultXmlAsString() {
+    Outcome outcome = Outcome.failure;
     try {
-      String sparqlEncoded = UriUtils.encodeQueryParam(sparql, "UTF-8");
-      HttpGet request = new HttpGet(sparqlEndpoint + "?query=" + sparqlEncoded);
-
-      String value = "application/sparql-results+xml";
-      request.addHeader(HttpHeaders.ACCEPT, value);
-
-      CloseableHttpResponse response = getHttpClient().execute(request);
-      if (200 <= response.getStatusLine().getStatusCode() && response.getStatusLine().getStatusCode() < 300) {
-        log.info("Call ok for '{}'.", sparqlName);
-        return EntityUtils.toString(response.getEntity());
-      }
-
-      log.error("Call failed for '{}'.", sparqlName);
-      log.debug(EntityUtils.toString(response.getEntity()));
-      return null;
+      outcome = client.execute(sparqlEndpoint, sparql, timeout, SparqlResultParser.accept,
+                               response -> handleResponse(response, rowCounter, statistics));
+      return outcome;
     }
     catch (IOException e) {
-      throw new RuntimeException(e);
+      // timeouts, refused or dropped connections and truncated results
+      log.warn("Failed query '{}'. {}", sparqlName, e.getMessage());
+      log.debug("Stacktrace", e);
+      statistics.failed(e.getClass().getSimpleName() + ": " + e.getMessage());
+      outcome = Outcome.retry;
+      return outcome;
+    }
+    catch (Exception e) {
+      log.warn("Failed query '{}'. {}", sparqlName, e.getMessage());
+      log.debug("Stacktrace", e);
+      statistics.failed(e.getClass().getSimpleName() + ": " + e.getMessage());
+      return Outcome.failure;
+    }
+    finally {
+      // only a successful query raises the limit, exceptions and rejected queries say nothing about the load
+      if (outcome == Outcome.failure) throttle.release();
+      else throttle.release(outcome == Outcome.retry);
     }
   }
 
-  private List<Map<String, RDFNode>> getResults(JsonNode jsonNode) {
-//    log.debug("JSON {}", jsonNode);
-
-    JsonNode path = jsonNode.path("sparql").path("results").path("result");
+  private Outcome handleResponse(HttpResponse response, RowCounter rowCounter, QueryStatistics statistics) throws IOException {
+    statistics.firstByte();
 
-    if (path instanceof ObjectNode) {
-      return Collections.singletonList(getRowMap((ObjectNode) path));
+    HttpEntity entity = response.getEntity();
+    int statusCode = response.getStatusLine().getStatusCode();
+    if (statusCode < 200 || 300 <= statusCode) {
+      log.error("Call failed for '{}'.", sparqlName);
+      if (entity != null) log.debug(EntityUtils.toString(entity));
+      statistics.failed("HTTP " + statusCode + " " + response.getStatusLine().getReasonPhrase());
+      return RetryPolicy.isRetryable(statusCode) ? Outcome.retry : Outcome.failure;
     }
 
-    if (!(path instanceof ArrayNode)) {
-      log.error("Failed to get results.");
-      return Collections.emptyList();
+    if (entity == null) {
+      log.info("Query failed.");
+      statistics.failed("Empty response");
+      return Outcome.failure;
     }
 
-    List<Map<String, RDFNode>> result = new ArrayList<>();
-    ArrayNode array = (ArrayNode) path;
-    Iterator<JsonNode> resultIterator = array.elements();
-    while (resultIterator.hasNext()) {
-      ObjectNode resultNode = (ObjectNode) resultIterator.next();
-      result.add(getRowMap(resultNode));
+    String contentType = entity.getContentType() == null ? null : entity.getContentType().getValue();
+    long parseStart = System.nanoTime();
+    try (CountingInputStream input = new CountingInputStream(entity.getContent())) {
+      try {
+        SparqlResultParser.forContentType(contentType).parse(input, rowCounter);
+      }
+      finally {
+        statistics.parsed(System.nanoTime() - parseStart, input.getByteCount(), rowCounter.rows);
+      }
     }
 
-    return result;
+    log.info("Call ok for '{}'.", sparqlName);
+    return Outcome.success;
   }
 
-  private Map<String, RDFNode> getRowMap(ObjectNode resultNode) {
-    JsonNode bindingNode = resultNode.path("binding");
-    if (bindingNode instanceof ObjectNode) {
-      Map<String, RDFNode> row = new HashMap<>();
-      addSingleBinding(row, (ObjectNode) bindingNode);
-      return row;
-    }
-
-    Map<String, RDFNode> row = new HashMap<>();
-
-    ArrayNode binding = (ArrayNode) bindingNode;
-    Iterator<JsonNode> bindingIterator = binding.elements();
-    while (bindingIterator.hasNext()) {
-      addSingleBinding(row, (ObjectNode) bindingIterator.next());
-    }
-
-    return row;
+  private enum Outcome {
+    success, retry, failure
   }
 
-  private void addSingleBinding(Map<String, RDFNode> row, ObjectNode singleBinding) {
-    String name = ((TextNode) singleBinding.get("name")).textValue();
+  private static class RowCounter implements QueryResultHandler {
 
-    if (singleBinding.has("uri")) {
-      String uri = singleBinding.get("uri").textValue();
-      row.put(name, ResourceFactory.createResource(uri));
-      return;
-    }
+    private final QueryResultHandler handler;
+    private long rows;
 
-    if (singleBinding.has("literal")) {
-      JsonNode literalNode = singleBinding.get("literal");
-      if (literalNode instanceof TextNode) {
-        throw new RuntimeException("TextNode not supported: " + literalNode);
-      }
-      else if (literalNode instanceof ObjectNode) {
-        ObjectNode literalNodeAsObject = (ObjectNode) literalNode;
-        String datatype = literalNodeAsObject.get("datatype").textValue();
-        String content = literalNodeAsObject.get("content").asText(); // important asText !!
+    private RowCounter(QueryResultHandler handler) {
+      this.handler = handler;
+    }
 
-        RDFDatatype typeByName = TypeMapper.getInstance().getTypeByName(datatype);
-        row.put(name, ResourceFactory.createTypedLiteral(content, typeByName));
-      }
+    @Override
+    public void variables(Set<String> variables) {
+      handler.variables(variables);
     }
 
+    @Override
+    public void row(Map<String, RDFNode> row) {
+      rows++;
+      handler.row(row);
+    }
   }
 
-  private Set<String> getVariables(JsonNode jsonNode) {
-    JsonNode path = jsonNode.path("sparql").path("head").path("variable");
+  static class QueryResultCollector implements QueryResultHandler {
 
-    if (path instanceof ObjectNode) {
-      return Collections.singleton(getVariable((ObjectNode) path));
-    }
+    private final QueryResult queryResult = new QueryResult(Collections.emptyList());
 
-    if (!(path instanceof ArrayNode)) {
-      log.error("Failed to get results.");
-      return Collections.emptySet();
+    @Override
+    public void variables(Set<String> variables) {
+      queryResult.addVariables(variables);
     }
 
-    Set<String> result = new HashSet<>();
-
-    ArrayNode array = (ArrayNode) path;
-    Iterator<JsonNode> elements = array.elements();
-    while (elements.hasNext()) {
-      result.add(getVariable((ObjectNode) elements.next()));
+    @Override
+    public void row(Map<String, RDFNode> row) {
+      queryResult.add(row);
     }
 
-    return result;
-  }
-
-  private String getVariable(ObjectNode variableNode) {
-    return variableNode.get("name").textValue();
+    QueryResult getQueryResult() {
+      return queryResult;
+    }
   }
 
 }
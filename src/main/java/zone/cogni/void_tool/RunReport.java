@@ -0,0 +1,118 @@
+package zone.cogni.void_tool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the {@link QueryStatistics} of a run.
+ * Each finished query is also recorded as Micrometer metrics, tagged with the resource name of its template and outcome.
+ * The full name, with page, sample, batch or graph, is only in the report.
+ * The server keeps the metrics of all its jobs and serves them on GET /metrics, on the command line only the report is kept.
+ */
+public class RunReport {
+
+  private final MeterRegistry registry;
+  private final Instant start = Instant.now();
+  private final List<QueryStatistics> queries = new ArrayList<>();
+
+  public RunReport() {
+    this(Metrics.globalRegistry);
+  }
+
+  public RunReport(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  public QueryStatistics start(String name) {
+    return new QueryStatistics(name);
+  }
+
+  public synchronized void finish(QueryStatistics statistics) {
+    queries.add(statistics);
+
+    String outcome = statistics.isCached() ? "cached" : statistics.isSuccess() ? "success" : "failure";
+    Timer.builder("void.query.latency").tags("query", statistics.getQuery(), "outcome", outcome).register(registry)
+            .record(statistics.getLatencyMillis(), TimeUnit.MILLISECONDS);
+    if (statistics.isCached()) return;
+
+    if (statistics.getTimeToFirstByteMillis() >= 0) {
+      Timer.builder("void.query.firstByte").tag("query", statistics.getQuery()).register(registry)
+              .record(statistics.getTimeToFirstByteMillis(), TimeUnit.MILLISECONDS);
+    }
+    if (statistics.getParseMillis() >= 0) {
+      Timer.builder("void.query.parse").tag("query", statistics.getQuery()).register(registry)
+              .record(statistics.getParseMillis(), TimeUnit.MILLISECONDS);
+    }
+    DistributionSummary.builder("void.query.bytes").baseUnit("bytes").tag("query", statistics.getQuery()).register(registry)
+            .record(statistics.getBytes());
+    DistributionSummary.builder("void.query.rows").tag("query", statistics.getQuery()).register(registry)
+            .record(statistics.getRows());
+    registry.counter("void.query.retries", "query", statistics.getQuery()).increment(statistics.getRetries());
+  }
+
+  public synchronized List<QueryStatistics> getQueries() {
+    return new ArrayList<>(queries);
+  }
+
+  /**
+   * @return file for the report of a VoID file: its name with .report.json appended
+   */
+  public static File getReportFile(String voidFile) {
+    return new File(voidFile + ".report.json");
+  }
+
+  public void write(File file, VoidSettings settings) throws IOException {
+    List<QueryStatistics> queries = getQueries();
+
+    Map<String, Object> totals = new LinkedHashMap<>();
+    totals.put("queries", queries.size());
+    totals.put("failed", queries.stream().filter(query -> !query.isSuccess()).count());
+    totals.put("cached", queries.stream().filter(QueryStatistics::isCached).count());
+    totals.put("retries", queries.stream().mapToLong(QueryStatistics::getRetries).sum());
+    totals.put("bytes", queries.stream().mapToLong(QueryStatistics::getBytes).sum());
+    totals.put("rows", queries.stream().mapToLong(QueryStatistics::getRows).sum());
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("datasetUri", settings.getDatasetUri());
+    report.put("sparqlEndpoint", settings.getSparqlEndpoint());
+    if (settings.getTdb2() != null) report.put("tdb2", settings.getTdb2());
+    report.put("start", start.toString());
+    report.put("durationMillis", System.currentTimeMillis() - start.toEpochMilli());
+    report.put("totals", totals);
+    report.put("queries", queries);
+
+    new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+  }
+
+  /**
+   * Prints a table of the queries, slowest first.
+   */
+  public void printSummary(PrintStream output) {
+    List<QueryStatistics> queries = getQueries();
+    queries.sort(Comparator.comparingLong(QueryStatistics::getLatencyMillis).reversed());
+
+    output.println(String.format("%-60s %8s %10s %10s %10s %12s %10s %7s  %s",
+                                 "Query", "Outcome", "Latency ms", "TTFB ms", "Parse ms", "Bytes", "Rows", "Retries", "Failure"));
+    queries.forEach(query -> output.println(String.format("%-60s %8s %10d %10d %10d %12d %10d %7d  %s",
+                                                          query.getName(),
+                                                          query.isCached() ? "cached" : query.isSuccess() ? "ok" : "failed",
+                                                          query.getLatencyMillis(), query.getTimeToFirstByteMillis(), query.getParseMillis(),
+                                                          query.getBytes(), query.getRows(), query.getRetries(),
+                                                          query.getFailure() == null ? "" : query.getFailure())));
+  }
+}
@@ -0,0 +1,212 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.graph.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Estimates a count query from a sample of the values of one variable, selected on the MD5 hash of their string form.
+ * The sample is split in replicates over disjoint hash ranges, they run in parallel and the spread of their estimates
+ * gives a 95% confidence interval. The result has the scaled total and the bounds of the interval as low and high,
+ * unbound when only one replicate succeeded.
+ * <p>
+ * Counts of distinct values of the sampled variable, and counts of rows, scale with the sample.
+ * Blank nodes have no string form to hash, their part is counted exactly by one more query and added to the estimate and its bounds.
+ */
+public class SampledQuery {
+
+  private static final Logger log = LoggerFactory.getLogger(SampledQuery.class);
+
+  public static final int replicates = 8;
+
+  // 97.5% quantiles of Student's t distribution for 1 to 10 degrees of freedom
+  private static final double[] tQuantiles = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228};
+
+  // hash ranges of a replicate have at least this many buckets, which keeps the rounding of the fraction below 1%
+  private static final int minBuckets = 64;
+  private static final int maxDigits = 12;
+
+  /**
+   * Adds the FILTER at the start of the WHERE group, which is the first group in the query templates.
+   *
+   * @param to end of the hash range, exclusive, 16^digits for no upper bound
+   */
+  static String getSampleSparql(String sparql, String sampleVariable, int digits, long from, long to) {
+    String hash = "SUBSTR(MD5(STR(?" + sampleVariable + ")), 1, " + digits + ")";
+    return addFilter(sparql, "!isBlank(?" + sampleVariable + ") && " + hash + " >= \"" + toHex(from, digits) + "\"" +
+                             (to < getBucketCount(digits) ? " && " + hash + " < \"" + toHex(to, digits) + "\"" : ""));
+  }
+
+  /**
+   * Restricts a streamed query to the values of the sample variable in the hash ranges of all replicates, and to all blank nodes,
+   * which have no string form to hash. Unchanged when the fraction covers all hash values.
+   */
+  static String getStreamSampleSparql(String sparql, String sampleVariable, double fraction) {
+    int digits = getDigits(fraction);
+    long to = replicates * getReplicateBuckets(fraction, digits);
+    if (to >= getBucketCount(digits)) return sparql;
+
+    return addFilter(sparql, "isBlank(?" + sampleVariable + ") || SUBSTR(MD5(STR(?" + sampleVariable + ")), 1, " + digits + ") < \"" +
+                             toHex(to, digits) + "\"");
+  }
+
+  static String getBlankNodeSparql(String sparql, String sampleVariable) {
+    return addFilter(sparql, "isBlank(?" + sampleVariable + ")");
+  }
+
+  private static String addFilter(String sparql, String condition) {
+    int whereStart = sparql.indexOf('{') + 1;
+    return sparql.substring(0, whereStart) + "\n  FILTER (" + condition + ")\n" + sparql.substring(whereStart);
+  }
+
+  private static String toHex(long value, int digits) {
+    return String.format("%0" + digits + "x", value);
+  }
+
+  private static long getBucketCount(int digits) {
+    return 1L << (4 * digits);
+  }
+
+  /**
+   * @return number of hash digits to compare so that a replicate of the fraction has at least {@link #minBuckets} buckets
+   */
+  private static int getDigits(double fraction) {
+    int digits = 1;
+    while (digits < maxDigits && fraction * getBucketCount(digits) / replicates < minBuckets) digits++;
+    return digits;
+  }
+
+  private static long getReplicateBuckets(double fraction, int digits) {
+    return Math.max(1, Math.round(fraction * getBucketCount(digits) / replicates));
+  }
+
+  /**
+   * @return fraction of the hash values that is sampled, the requested fraction rounded to whole buckets
+   */
+  public static double getSampledFraction(double fraction) {
+    int digits = getDigits(fraction);
+    return (double) replicates * getReplicateBuckets(fraction, digits) / getBucketCount(digits);
+  }
+
+  private final BiFunction<String, String, CompletableFuture<Optional<QueryResult>>> submitter;
+  private final String sparql;
+  private final String sparqlName;
+  private final String groupVariable;
+  private final String sampleVariable;
+  private final int digits;
+  private final long replicateBuckets;
+
+  /**
+   * @param submitter submits a query given its sparql and name
+   * @param groupVariable variable the query returns one row for, null for a single total
+   * @param sampleVariable variable whose values are sampled
+   * @param fraction part of the values to sample, at most 0.5
+   */
+  public SampledQuery(BiFunction<String, String, CompletableFuture<Optional<QueryResult>>> submitter,
+                      String sparql, String sparqlName, String groupVariable, String sampleVariable, double fraction) {
+    this.submitter = submitter;
+    this.sparql = sparql;
+    this.sparqlName = sparqlName;
+    this.groupVariable = groupVariable;
+    this.sampleVariable = sampleVariable;
+    this.digits = getDigits(fraction);
+    this.replicateBuckets = getReplicateBuckets(fraction, digits);
+  }
+
+  /**
+   * @return estimates from the replicates that succeeded, empty if all failed or the blank node count failed
+   */
+  public CompletableFuture<Optional<QueryResult>> submit() {
+    List<CompletableFuture<Optional<QueryResult>>> samples = new ArrayList<>();
+    for (int replicate = 0; replicate < replicates; replicate++) {
+      String sampleSparql = getSampleSparql(sparql, sampleVariable, digits, replicate * replicateBuckets, (replicate + 1) * replicateBuckets);
+      samples.add(submitter.apply(sampleSparql, sparqlName + " (sample " + (replicate + 1) + " of " + replicates + ")"));
+    }
+    CompletableFuture<Optional<QueryResult>> blankNodes = submitter.apply(getBlankNodeSparql(sparql, sampleVariable), sparqlName + " (blank nodes)");
+
+    List<CompletableFuture<Optional<QueryResult>>> all = new ArrayList<>(samples);
+    all.add(blankNodes);
+    return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> estimate(samples, blankNodes.join()));
+  }
+
+  private Optional<QueryResult> estimate(List<CompletableFuture<Optional<QueryResult>>> samples, Optional<QueryResult> blankNodes) {
+    if (!blankNodes.isPresent()) {
+      log.warn("Blank node count failed for '{}', no estimate without it.", sparqlName);
+      return Optional.empty();
+    }
+
+    List<QueryResult> results = samples.stream()
+            .map(CompletableFuture::join)
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList());
+    if (results.isEmpty()) return Optional.empty();
+    if (results.size() < samples.size()) {
+      log.warn("{} of {} samples failed for '{}', estimating from the others.", samples.size() - results.size(), samples.size(), sparqlName);
+    }
+
+    // counts per group and replicate, a group missing in a replicate has count 0 there
+    Map<Node, long[]> counts = new LinkedHashMap<>();
+    for (int replicate = 0; replicate < results.size(); replicate++) {
+      int index = replicate;
+      results.get(replicate).rows()
+              .filter(row -> groupVariable == null || row.get(groupVariable) != null)
+              .forEach(row -> counts.computeIfAbsent(groupVariable == null ? null : row.get(groupVariable), key -> new long[results.size()])
+                      [index] += row.getLong("total"));
+    }
+
+    // exact counts of the blank nodes per group, a group can have blank nodes only
+    Map<Node, Long> exact = new LinkedHashMap<>();
+    blankNodes.get().rows()
+            .filter(row -> groupVariable == null || row.get(groupVariable) != null)
+            .forEach(row -> exact.merge(groupVariable == null ? null : row.get(groupVariable), row.getLong("total"), Long::sum));
+    exact.keySet().forEach(group -> counts.computeIfAbsent(group, key -> new long[results.size()]));
+
+    QueryResult result = new QueryResult(groupVariable == null ? Arrays.asList("total", "low", "high")
+                                                               : Arrays.asList("total", groupVariable, "low", "high"));
+    counts.forEach((group, replicateCounts) -> {
+      long[] estimate = getEstimate(replicateCounts);
+      long blank = exact.getOrDefault(group, 0L);
+      List<Node> values = new ArrayList<>(Collections.singletonList(ResultTerms.integer(estimate[0] + blank)));
+      if (groupVariable != null) values.add(group);
+      values.add(estimate.length == 1 ? null : ResultTerms.integer(estimate[1] + blank));
+      values.add(estimate.length == 1 ? null : ResultTerms.integer(estimate[2] + blank));
+      result.add(values.toArray(new Node[0]));
+    });
+    return Optional.of(result);
+  }
+
+  /**
+   * Each replicate scaled on its own is an estimate of the total, their mean is the estimate of the whole sample.
+   * The lower bound is never below the count seen in the sample.
+   *
+   * @return estimate, lower and upper bound of its 95% confidence interval, only the estimate for a single replicate
+   */
+  private long[] getEstimate(long[] replicateCounts) {
+    double scale = (double) getBucketCount(digits) / replicateBuckets;
+    int n = replicateCounts.length;
+    long seen = Arrays.stream(replicateCounts).sum();
+    double mean = scale * seen / n;
+    if (n == 1) return new long[]{Math.round(mean)};
+
+    double squares = Arrays.stream(replicateCounts).mapToDouble(count -> Math.pow(scale * count - mean, 2)).sum();
+    double halfWidth = getTQuantile(n - 1) * Math.sqrt(squares / (n - 1) / n);
+    return new long[]{Math.round(mean), Math.max(seen, Math.round(mean - halfWidth)), Math.round(mean + halfWidth)};
+  }
+
+  private static double getTQuantile(int degreesOfFreedom) {
+    return degreesOfFreedom <= tQuantiles.length ? tQuantiles[degreesOfFreedom - 1] : 1.96;
+  }
+}
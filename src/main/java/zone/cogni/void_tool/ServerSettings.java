@@ -0,0 +1,57 @@
+package zone.cogni.void_tool;
+
+/**
+ * Options of the VoID server, the generation options are given per job.
+ */
+public class ServerSettings {
+
+  private boolean server;
+  private int port = 8080;
+  private int workers = 2;
+  private int queueSize = 100;
+
+  /**
+   * @return true to keep running and generate VoID for jobs posted over HTTP instead of a single run
+   */
+  public boolean isServer() {
+    return server;
+  }
+
+  public ServerSettings setServer(boolean server) {
+    this.server = server;
+    return this;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public ServerSettings setPort(int port) {
+    this.port = port;
+    return this;
+  }
+
+  /**
+   * @return number of jobs running at the same time
+   */
+  public int getWorkers() {
+    return workers;
+  }
+
+  public ServerSettings setWorkers(int workers) {
+    this.workers = workers;
+    return this;
+  }
+
+  /**
+   * @return number of jobs waiting for a worker before new jobs are refused
+   */
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  public ServerSettings setQueueSize(int queueSize) {
+    this.queueSize = queueSize;
+    return this;
+  }
+}
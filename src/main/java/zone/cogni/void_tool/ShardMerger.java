@@ -0,0 +1,64 @@
+package zone.cogni.void_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates VoID from the partial statistics files written by the workers of a sharded dump run.
+ * All shards must be given, once each, and counted with the same --approximate and --precision.
+ */
+public class ShardMerger implements Supplier<VoidModelBuilder> {
+
+  private static final Logger log = LoggerFactory.getLogger(ShardMerger.class);
+
+  private final VoidSettings settings;
+
+  public ShardMerger(VoidSettings settings) {
+    this.settings = settings;
+  }
+
+  @Override
+  public VoidModelBuilder get() {
+    List<PartialStatistics> partials = new ArrayList<>();
+    settings.getMerge().forEach(file -> partials.add(PartialStatistics.read(new File(file))));
+    partials.sort(Comparator.comparingInt(PartialStatistics::getShard));
+    check(partials);
+
+    PartialStatistics result = partials.get(0);
+    partials.subList(1, partials.size()).forEach(result::merge);
+    log.info("Merged {} shards.", partials.size());
+
+    VoidModelBuilder voidModelBuilder = new VoidModelBuilder(settings);
+    result.fill(voidModelBuilder);
+    return voidModelBuilder;
+  }
+
+  private static void check(List<PartialStatistics> partials) {
+    PartialStatistics first = partials.get(0);
+    if (partials.stream().anyMatch(partial -> partial.getShards() != first.getShards()
+                                              || partial.getPrecision() != first.getPrecision())) {
+      throw new IllegalArgumentException("Partial statistics files are not shards of the same run, "
+                                         + "they differ in shard count, --approximate or --precision.");
+    }
+
+    TreeSet<Integer> shards = new TreeSet<>();
+    List<Integer> duplicates = partials.stream().map(PartialStatistics::getShard).filter(shard -> !shards.add(shard)).collect(Collectors.toList());
+    if (!duplicates.isEmpty()) throw new IllegalArgumentException("Shards " + join(duplicates) + " are given more than once.");
+
+    List<Integer> missing = IntStream.rangeClosed(1, first.getShards()).filter(shard -> !shards.contains(shard)).boxed().collect(Collectors.toList());
+    if (!missing.isEmpty()) throw new IllegalArgumentException("Shards " + join(missing) + " of " + first.getShards() + " are missing.");
+  }
+
+  private static String join(List<Integer> shards) {
+    return shards.stream().map(String::valueOf).collect(Collectors.joining(", "));
+  }
+}
@@ -0,0 +1,78 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.RDFNode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Counts the distinct values of ?value in a streamed result with a HyperLogLog sketch, per value of the group variable if there is one.
+ * The counts are returned in the same shape as the COUNT(DISTINCT ...) queries, with the count in ?total.
+ * <p>
+ * When the stream is a hash sample of the values, the count of the sampled values is scaled up to all values.
+ * Blank nodes are not sampled, they have their own sketch that is added as is.
+ */
+public class SketchAggregator implements QueryResultHandler {
+
+  private final String groupVariable;
+  private final int precision;
+  private final double fraction;
+  private final Map<String, HyperLogLog> sketches = new HashMap<>();
+  private final Map<String, HyperLogLog> blankNodeSketches = new HashMap<>();
+
+  /**
+   * @param groupVariable variable holding the class or property, null for a dataset wide count
+   * @param fraction of the non blank values that is streamed, 1 when not sampled
+   */
+  public SketchAggregator(String groupVariable, int precision, double fraction) {
+    this.groupVariable = groupVariable;
+    this.precision = precision;
+    this.fraction = fraction;
+  }
+
+  @Override
+  public void variables(Set<String> variables) {
+  }
+
+  @Override
+  public void row(Map<String, RDFNode> row) {
+    RDFNode value = row.get("value");
+    if (value == null) return;
+
+    String group = "";
+    if (groupVariable != null) {
+      RDFNode groupNode = row.get(groupVariable);
+      if (groupNode == null || !groupNode.isURIResource()) return;
+      group = groupNode.asResource().getURI();
+    }
+
+    Map<String, HyperLogLog> groupSketches = value.isAnon() ? blankNodeSketches : sketches;
+    groupSketches.computeIfAbsent(group, key -> new HyperLogLog(precision)).add(value.asNode().toString());
+  }
+
+  public QueryResult getQueryResult() {
+    if (groupVariable == null) {
+      QueryResult queryResult = new QueryResult(Collections.singletonList("total"));
+      queryResult.add(ResultTerms.integer(getCount("")));
+      return queryResult;
+    }
+
+    Set<String> groups = new TreeSet<>(sketches.keySet());
+    groups.addAll(blankNodeSketches.keySet());
+
+    QueryResult queryResult = new QueryResult(Arrays.asList("total", groupVariable));
+    groups.forEach(group -> queryResult.add(ResultTerms.integer(getCount(group)), NodeFactory.createURI(group)));
+    return queryResult;
+  }
+
+  private long getCount(String group) {
+    long sampled = sketches.containsKey(group) ? sketches.get(group).count() : 0;
+    long blankNodes = blankNodeSketches.containsKey(group) ? blankNodeSketches.get(group).count() : 0;
+    return Math.round(sampled / fraction) + blankNodes;
+  }
+}
@@ -0,0 +1,191 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approximate statistics where every distinct count is a HyperLogLog sketch of fixed size.
+ * <p>
+ * No per subject triples or objects are kept: consecutive triples with the same subject are buffered
+ * and added to the class partitions of that subject when the subject changes.
+ * This is exact for dumps grouped by subject, like sorted N-Triples or Turtle.
+ * Otherwise triples read before the first type of their subject are not counted in its class partitions.
+ */
+public class SketchDumpStatistics extends DumpStatistics {
+
+  private final int precision;
+
+  private final HyperLogLog subjects;
+  private final HyperLogLog objects;
+  private final HyperLogLog entities;
+  private final Set<Node> classes = new HashSet<>();
+  private final Map<Node, Set<Node>> subjectTypes = new HashMap<>();
+  private final Map<Node, PropertySketch> propertyData = new HashMap<>();
+  private final Map<Node, ClassSketch> classData = new HashMap<>();
+
+  private Node runSubject;
+  private final List<Triple> run = new ArrayList<>();
+
+  public SketchDumpStatistics(String uriSpace, int precision) {
+    super(uriSpace);
+    this.precision = precision;
+    this.subjects = new HyperLogLog(precision);
+    this.objects = new HyperLogLog(precision);
+    this.entities = new HyperLogLog(precision);
+  }
+
+  @Override
+  public void triple(Triple triple) {
+    Node subject = triple.getSubject();
+    Node predicate = triple.getPredicate();
+    Node object = triple.getObject();
+
+    if (!subject.equals(runSubject)) {
+      flushRun();
+      runSubject = subject;
+    }
+    run.add(triple);
+
+    triples++;
+    subjects.add(subject.toString());
+
+    PropertySketch property = propertyData.computeIfAbsent(predicate, key -> new PropertySketch());
+    property.triples++;
+    property.subjects.add(subject.toString());
+
+    if (!object.isLiteral()) {
+      objects.add(object.toString());
+      property.objects.add(object.toString());
+    }
+
+    if (predicate.equals(RDF.type.asNode())) {
+      subjectTypes.computeIfAbsent(subject, key -> new HashSet<>()).add(object);
+      classes.add(object);
+      entities.add(subject.toString());
+      addExampleResource(object, subject);
+    }
+  }
+
+  @Override
+  public void finish() {
+    flushRun();
+  }
+
+  private void flushRun() {
+    Set<Node> types = subjectTypes.get(runSubject);
+    if (types != null) {
+      run.forEach(triple -> addToPartitions(triple, types));
+    }
+
+    run.clear();
+  }
+
+  private void addToPartitions(Triple triple, Set<Node> types) {
+    String subject = triple.getSubject().toString();
+    Node object = triple.getObject();
+
+    PropertySketch property = propertyData.get(triple.getPredicate());
+    property.entities.add(subject);
+    property.classes.addAll(types);
+
+    types.forEach(type -> {
+      ClassSketch data = classData.computeIfAbsent(type, key -> new ClassSketch());
+      data.triples++;
+      data.subjects.add(subject);
+      data.properties.add(triple.getPredicate());
+      if (!object.isLiteral()) data.objects.add(object.toString());
+    });
+  }
+
+  @Override
+  protected void addVocabularies(VoidModelBuilder voidModelBuilder) {
+    classes.stream()
+            .filter(Node::isURI)
+            .forEach(type -> voidModelBuilder.addVocabularyTerm(type.getURI()));
+    propertyData.keySet().forEach(property -> voidModelBuilder.addVocabularyTerm(property.getURI()));
+  }
+
+  @Override
+  protected void addDatasetStatistics(VoidModelBuilder voidModelBuilder) {
+    voidModelBuilder.addApproximationComment(precision);
+
+    voidModelBuilder.addDatasetStatistic("triples", triples);
+    voidModelBuilder.addDatasetStatistic("entities", entities.count());
+    voidModelBuilder.addDatasetStatistic("classes", classes.size());
+    voidModelBuilder.addDatasetStatistic("properties", propertyData.size());
+    voidModelBuilder.addDatasetStatistic("distinctSubjects", subjects.count());
+    voidModelBuilder.addDatasetStatistic("distinctObjects", objects.count());
+  }
+
+  @Override
+  protected void addPartitionStatistics(VoidModelBuilder voidModelBuilder) {
+    classData.forEach((type, data) -> {
+      if (!type.isURI()) return;
+
+      String uri = type.getURI();
+      long classSubjects = data.subjects.count();
+      voidModelBuilder.addClassStatistic(uri, "triples", data.triples);
+      voidModelBuilder.addClassStatistic(uri, "entities", classSubjects);
+      voidModelBuilder.addClassStatistic(uri, "classes", 1);
+      voidModelBuilder.addClassStatistic(uri, "properties", data.properties.size());
+      voidModelBuilder.addClassStatistic(uri, "distinctSubjects", classSubjects);
+      if (data.objects.count() > 0) voidModelBuilder.addClassStatistic(uri, "distinctObjects", data.objects.count());
+    });
+
+    propertyData.forEach((property, data) -> {
+      String uri = property.getURI();
+      voidModelBuilder.addPropertyStatistic(uri, "triples", data.triples);
+      if (data.entities.count() > 0) voidModelBuilder.addPropertyStatistic(uri, "entities", data.entities.count());
+      if (!data.classes.isEmpty()) voidModelBuilder.addPropertyStatistic(uri, "classes", data.classes.size());
+      voidModelBuilder.addPropertyStatistic(uri, "properties", 1);
+      voidModelBuilder.addPropertyStatistic(uri, "distinctSubjects", data.subjects.count());
+      if (data.objects.count() > 0) voidModelBuilder.addPropertyStatistic(uri, "distinctObjects", data.objects.count());
+    });
+  }
+
+  @Override
+  protected PartialStatistics createPartial(int shard, int shards) {
+    PartialStatistics result = new PartialStatistics(shard, shards, precision);
+    result.getDataset().setCounts(triples, entities.count(), subjects.count())
+          .getObjectSketch().merge(objects);
+
+    classData.forEach((type, data) -> {
+      long classSubjects = data.subjects.count();
+      PartialStatistics.Partition partition = result.getClassPartition(key(type)).setCounts(data.triples, classSubjects, classSubjects);
+      partition.getObjectSketch().merge(data.objects);
+      data.properties.forEach(property -> partition.addTerm(property.getURI()));
+    });
+
+    propertyData.forEach((property, data) -> {
+      PartialStatistics.Partition partition = result.getPropertyPartition(property.getURI())
+                                                    .setCounts(data.triples, data.entities.count(), data.subjects.count());
+      partition.getObjectSketch().merge(data.objects);
+      data.classes.forEach(type -> partition.addTerm(key(type)));
+    });
+    return result;
+  }
+
+  private class PropertySketch {
+    private long triples;
+    private final HyperLogLog subjects = new HyperLogLog(precision);
+    private final HyperLogLog objects = new HyperLogLog(precision);
+    private final HyperLogLog entities = new HyperLogLog(precision);
+    private final Set<Node> classes = new HashSet<>();
+  }
+
+  private class ClassSketch {
+    private long triples;
+    private final HyperLogLog subjects = new HyperLogLog(precision);
+    private final HyperLogLog objects = new HyperLogLog(precision);
+    private final Set<Node> properties = new HashSet<>();
+  }
+
+}
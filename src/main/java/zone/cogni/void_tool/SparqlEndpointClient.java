@@ -0,0 +1,113 @@
+package zone.cogni.void_tool;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.web.util.UriUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Http client shared by all queries of a run.
+ * Connections are pooled and kept alive, responses may be gzip or deflate encoded
+ * and queries that are too long for a url are sent as a POST body.
+ */
+public class SparqlEndpointClient implements Closeable {
+
+  private static final int maxGetUrlLength = 2048;
+  private static final long defaultKeepAliveMillis = 30_000;
+  private static final ContentType sparqlQuery = ContentType.create("application/sparql-query", StandardCharsets.UTF_8);
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient httpClient;
+  private final int maxConnectionsPerEndpoint;
+  private final Map<String, EndpointThrottle> throttles = new ConcurrentHashMap<>();
+
+  public SparqlEndpointClient(int maxConnections) {
+    this(maxConnections, maxConnections);
+  }
+
+  /**
+   * @param maxConnectionsPerEndpoint also the maximum number of queries running at the same time on one endpoint
+   */
+  public SparqlEndpointClient(int maxConnections, int maxConnectionsPerEndpoint) {
+    this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+    connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerEndpoint);
+    connectionManager.setValidateAfterInactivity(2_000);
+
+    // content compression is on by default: gzip and deflate are requested and decoded transparently
+    httpClient = HttpClientBuilder.create()
+            .setConnectionManager(connectionManager)
+            .setKeepAliveStrategy(getKeepAliveStrategy())
+            .evictIdleConnections(defaultKeepAliveMillis, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
+  private ConnectionKeepAliveStrategy getKeepAliveStrategy() {
+    return (response, context) -> {
+      long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return keepAlive > 0 ? keepAlive : defaultKeepAliveMillis;
+    };
+  }
+
+  public <T> T execute(String sparqlEndpoint, String sparql, int timeoutInSeconds, String accept,
+                       ResponseHandler<? extends T> responseHandler) throws IOException {
+    HttpRequestBase request = createRequest(sparqlEndpoint, sparql);
+    request.setConfig(getRequestConfig(timeoutInSeconds));
+    request.addHeader(HttpHeaders.ACCEPT, accept);
+
+    return httpClient.execute(request, responseHandler);
+  }
+
+  private HttpRequestBase createRequest(String sparqlEndpoint, String sparql) throws IOException {
+    String getUrl = sparqlEndpoint + "?query=" + UriUtils.encodeQueryParam(sparql, "UTF-8");
+    if (getUrl.length() <= maxGetUrlLength) return new HttpGet(getUrl);
+
+    HttpPost post = new HttpPost(sparqlEndpoint);
+    post.setEntity(new StringEntity(sparql, sparqlQuery));
+    return post;
+  }
+
+  private RequestConfig getRequestConfig(int timeoutInSeconds) {
+    int timeout = timeoutInSeconds * 1000;
+    return RequestConfig.custom()
+            .setConnectionRequestTimeout(timeout)
+            .setConnectTimeout(timeout)
+            .setSocketTimeout(timeout)
+            .build();
+  }
+
+  /**
+   * @return throttle shared by all queries on the endpoint
+   */
+  public EndpointThrottle getThrottle(String sparqlEndpoint) {
+    return throttles.computeIfAbsent(sparqlEndpoint, endpoint -> new EndpointThrottle(endpoint, maxConnectionsPerEndpoint));
+  }
+
+  public PoolStats getPoolStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  @Override
+  public void close() throws IOException {
+    httpClient.close();
+  }
+}
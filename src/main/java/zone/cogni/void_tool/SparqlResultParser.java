@@ -0,0 +1,25 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser for one of the SPARQL result formats, rows are passed on as soon as they are read.
+ */
+public interface SparqlResultParser {
+
+  String accept = "application/sparql-results+xml, application/sparql-results+json;q=0.9, text/tab-separated-values;q=0.8";
+
+  static SparqlResultParser forContentType(String contentType) {
+    String mimeType = StringUtils.substringBefore(StringUtils.defaultString(contentType), ";").trim().toLowerCase();
+
+    if (mimeType.equals("application/sparql-results+json") || mimeType.equals("application/json")) return new JsonResultParser();
+    if (mimeType.equals("text/tab-separated-values")) return new TsvResultParser();
+    return new XmlResultParser();
+  }
+
+  void parse(InputStream input, QueryResultHandler handler) throws IOException;
+
+}
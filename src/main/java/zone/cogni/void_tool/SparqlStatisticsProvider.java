@@ -0,0 +1,35 @@
+package zone.cogni.void_tool;
+
+import java.util.Optional;
+
+/**
+ * Sends the queries over HTTP to a SPARQL endpoint.
+ */
+public class SparqlStatisticsProvider implements StatisticsProvider {
+
+  private final SparqlEndpointClient client;
+  private final RunReport report;
+  private final RetryPolicy retryPolicy;
+  private final int timeout;
+  private final String sparqlEndpoint;
+
+  public SparqlStatisticsProvider(SparqlEndpointClient client, RunReport report, RetryPolicy retryPolicy, int timeout, String sparqlEndpoint) {
+    this.client = client;
+    this.report = report;
+    this.retryPolicy = retryPolicy;
+    this.timeout = timeout;
+    this.sparqlEndpoint = sparqlEndpoint;
+  }
+
+  @Override public Optional<QueryResult> select(String sparql, String sparqlName) {
+    return RunQuery.runFromSparql(client, report, retryPolicy, timeout, sparqlEndpoint, sparql, sparqlName);
+  }
+
+  @Override public boolean stream(String sparql, String sparqlName, QueryResultHandler handler) {
+    return RunQuery.streamFromSparql(client, report, retryPolicy, timeout, sparqlEndpoint, sparql, sparqlName, handler);
+  }
+
+  @Override public String getSource() {
+    return sparqlEndpoint;
+  }
+}
@@ -0,0 +1,36 @@
+package zone.cogni.void_tool;
+
+import java.util.Optional;
+
+/**
+ * Runs the SELECT queries of a VoID run against the data, wherever it is stored.
+ */
+public interface StatisticsProvider {
+
+  /**
+   * @return a local TDB2 database when --tdb2 is set, the SPARQL endpoint otherwise
+   */
+  static StatisticsProvider create(SparqlEndpointClient client, RunReport report, VoidSettings settings) {
+    if (settings.getTdb2() != null) return new Tdb2StatisticsProvider(settings.getTdb2(), report, settings.getTimeoutInSeconds());
+
+    RetryPolicy retryPolicy = new RetryPolicy(settings.getRetries(), settings.getRetryDelayMillis());
+    return new SparqlStatisticsProvider(client, report, retryPolicy, settings.getTimeoutInSeconds(), settings.getSparqlEndpoint());
+  }
+
+  /**
+   * @return all rows of the result, empty if the query failed
+   */
+  Optional<QueryResult> select(String sparql, String sparqlName);
+
+  /**
+   * Streams the rows of the result to the handler without keeping them in memory.
+   *
+   * @return false if the query failed, the handler can then have received part of the rows
+   */
+  boolean stream(String sparql, String sparqlName, QueryResultHandler handler);
+
+  /**
+   * @return identifies the data in the query result cache
+   */
+  String getSource();
+}
@@ -0,0 +1,93 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the queries in process with ARQ on a local TDB2 database, in a read transaction each.
+ * There is no HTTP and no result serialization, TDB2 matches the triple patterns on its SPO, POS and OSP indexes.
+ * Failed queries are not retried, they fail the same way again.
+ */
+public class Tdb2StatisticsProvider implements StatisticsProvider {
+
+  private static final Logger log = LoggerFactory.getLogger(Tdb2StatisticsProvider.class);
+
+  private final String directory;
+  private final Dataset dataset;
+  private final RunReport report;
+  private final int timeout;
+
+  /**
+   * TDB2 keeps one connection per directory, runs in the same JVM share it.
+   */
+  public Tdb2StatisticsProvider(String directory, RunReport report, int timeout) {
+    this.directory = directory;
+    this.dataset = TDB2Factory.connectDataset(directory);
+    this.report = report;
+    this.timeout = timeout;
+  }
+
+  @Override public Optional<QueryResult> select(String sparql, String sparqlName) {
+    RunQuery.QueryResultCollector collector = new RunQuery.QueryResultCollector();
+    return stream(sparql, sparqlName, collector) ? Optional.of(collector.getQueryResult()) : Optional.empty();
+  }
+
+  @Override public boolean stream(String sparql, String sparqlName, QueryResultHandler handler) {
+    QueryStatistics statistics = report.start(sparqlName);
+    try {
+      Txn.executeRead(dataset, () -> execute(sparql, handler, statistics));
+      statistics.succeeded();
+      log.info("Query ok for '{}'.", sparqlName);
+      return true;
+    }
+    catch (Exception e) {
+      // timeouts cancel the query, syntax errors and failures in TDB2 itself
+      log.warn("Failed query '{}'. {}", sparqlName, e.getMessage());
+      log.debug("Stacktrace", e);
+      statistics.failed(e.getClass().getSimpleName() + ": " + e.getMessage());
+      return false;
+    }
+    finally {
+      report.finish(statistics);
+    }
+  }
+
+  private void execute(String sparql, QueryResultHandler handler, QueryStatistics statistics) {
+    try (QueryExecution queryExecution = QueryExecutionFactory.create(sparql, dataset)) {
+      if (timeout > 0) queryExecution.setTimeout(timeout, TimeUnit.SECONDS);
+
+      long start = System.nanoTime();
+      ResultSet resultSet = queryExecution.execSelect();
+      statistics.firstByte();
+      handler.variables(new LinkedHashSet<>(resultSet.getResultVars()));
+
+      long rows = 0;
+      while (resultSet.hasNext()) {
+        QuerySolution solution = resultSet.next();
+        Map<String, RDFNode> row = new HashMap<>();
+        solution.varNames().forEachRemaining(variable -> row.put(variable, solution.get(variable)));
+        handler.row(row);
+        rows++;
+      }
+      statistics.parsed(System.nanoTime() - start, 0, rows);
+    }
+  }
+
+  @Override public String getSource() {
+    return "tdb2:" + directory;
+  }
+}
@@ -0,0 +1,49 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line based parser for text/tab-separated-values, terms are written in turtle syntax.
+ */
+public class TsvResultParser implements SparqlResultParser {
+
+  @Override
+  public void parse(InputStream input, QueryResultHandler handler) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+    String header = reader.readLine();
+    if (header == null) throw new IOException("Invalid SPARQL TSV result: no header found.");
+
+    List<String> variables = new ArrayList<>();
+    for (String variable : header.split("\t", -1)) {
+      variables.add(StringUtils.removeStart(StringUtils.removeStart(variable.trim(), "?"), "$"));
+    }
+    handler.variables(new LinkedHashSet<>(variables));
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty()) continue;
+
+      String[] terms = line.split("\t", -1);
+      Map<String, RDFNode> row = new HashMap<>();
+      for (int i = 0; i < Math.min(terms.length, variables.size()); i++) {
+        if (terms[i].isEmpty()) continue;
+        row.put(variables.get(i), ResultTerms.asRdfNode(NodeFactoryExtra.parseNode(terms[i])));
+      }
+      handler.row(row);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package zone.cogni.void_tool;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * REST API of the VoID server.
+ * <ul>
+ * <li>POST /jobs queues a generation job, GET /jobs and GET /jobs/{id} show their status</li>
+ * <li>GET /void?datasetUri=... returns the latest VoID of a dataset, with ETag and Last-Modified for conditional requests</li>
+ * <li>POST /schedules adds a job that is queued each time its cron expression fires, GET and DELETE manage them</li>
+ * <li>GET /metrics returns the query metrics of all jobs so far</li>
+ * </ul>
+ */
+@RestController
+@ConditionalOnWebApplication
+public class VoidController {
+
+  private final VoidService voidService;
+  private final MeterRegistry meterRegistry;
+
+  public VoidController(VoidService voidService, MeterRegistry meterRegistry) {
+    this.voidService = voidService;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @RequestMapping(value = "/jobs", method = RequestMethod.POST)
+  public ResponseEntity<VoidJob> submitJob(@RequestBody VoidJobRequest request) {
+    VoidJob job = voidService.submit(request);
+    return ResponseEntity.accepted().location(URI.create("/jobs/" + job.getId())).body(job);
+  }
+
+  @RequestMapping(value = "/jobs", method = RequestMethod.GET)
+  public List<VoidJob> getJobs() {
+    return voidService.getJobs();
+  }
+
+  @RequestMapping(value = "/jobs/{id}", method = RequestMethod.GET)
+  public ResponseEntity<VoidJob> getJob(@PathVariable("id") String id) {
+    return found(voidService.getJob(id));
+  }
+
+  @RequestMapping(value = "/void", method = RequestMethod.GET)
+  public ResponseEntity<byte[]> getVoid(@RequestParam("datasetUri") String datasetUri, WebRequest webRequest) {
+    Optional<VoidService.GeneratedVoid> generatedVoid = voidService.getLatest(datasetUri);
+    if (!generatedVoid.isPresent()) return ResponseEntity.notFound().build();
+
+    VoidService.GeneratedVoid result = generatedVoid.get();
+    if (webRequest.checkNotModified(result.getEtag(), result.getLastModified())) return null;
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.parseMediaType(result.getContentType()));
+    headers.setETag(result.getEtag());
+    headers.setLastModified(result.getLastModified());
+    return new ResponseEntity<>(result.getContent(), headers, HttpStatus.OK);
+  }
+
+  @RequestMapping(value = "/schedules", method = RequestMethod.POST)
+  public ResponseEntity<VoidSchedule> addSchedule(@RequestBody VoidJobRequest request) {
+    if (request.getCron() == null) throw new IllegalArgumentException("A schedule needs a cron expression.");
+
+    VoidSchedule schedule = voidService.schedule(request);
+    return ResponseEntity.created(URI.create("/schedules/" + schedule.getId())).body(schedule);
+  }
+
+  @RequestMapping(value = "/schedules", method = RequestMethod.GET)
+  public List<VoidSchedule> getSchedules() {
+    return voidService.getSchedules();
+  }
+
+  @RequestMapping(value = "/schedules/{id}", method = RequestMethod.DELETE)
+  public ResponseEntity<VoidSchedule> cancelSchedule(@PathVariable("id") String id) {
+    return found(voidService.cancelSchedule(id));
+  }
+
+  @RequestMapping(value = "/metrics", method = RequestMethod.GET)
+  public List<Map<String, Object>> getMetrics() {
+    return meterRegistry.getMeters().stream()
+            .sorted(Comparator.comparing((Meter meter) -> meter.getId().getName()).thenComparing(meter -> meter.getId().getTags().toString()))
+            .map(VoidController::toMap)
+            .collect(Collectors.toList());
+  }
+
+  private static Map<String, Object> toMap(Meter meter) {
+    Map<String, Object> measurements = new LinkedHashMap<>();
+    meter.measure().forEach(measurement -> measurements.put(measurement.getStatistic().name().toLowerCase(), measurement.getValue()));
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("name", meter.getId().getName());
+    result.put("tags", meter.getId().getTags().stream().collect(Collectors.toMap(Tag::getKey, Tag::getValue, (a, b) -> b, TreeMap::new)));
+    result.put("measurements", measurements);
+    return result;
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<Map<String, String>> invalidRequest(IllegalArgumentException e) {
+    return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+  }
+
+  @ExceptionHandler(RejectedExecutionException.class)
+  public ResponseEntity<Map<String, String>> tooManyJobs() {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Collections.singletonMap("error", "Too many jobs waiting, try again later."));
+  }
+
+  private static <T> ResponseEntity<T> found(Optional<T> result) {
+    return result.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+  }
+}
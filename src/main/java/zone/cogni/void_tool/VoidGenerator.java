@@ -1,255 +1,539 @@
 package zone.cogni.void_tool;
 
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.ResourceFactory;
-import org.apache.jena.vocabulary.RDF;
-import org.apache.jena.vocabulary.RDFS;
-import org.apache.jena.vocabulary.VOID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.MessageFormatter;
-import org.springframework.core.io.ClassPathResource;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-public class VoidGenerator implements Supplier<Model> {
+public class VoidGenerator implements Supplier<VoidModelBuilder> {
 
-  private static List<String> voidProperties = Arrays.asList("triples", "entities",
-                                                             "classes", "properties",
-                                                             "distinctSubjects", "distinctObjects");
+  private static final Logger log = LoggerFactory.getLogger(VoidGenerator.class);
 
-  private static String readQuery(String resource) {
-    try {
-      return IOUtils.toString(new ClassPathResource(resource).getInputStream(), "UTF-8");
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+  private static List<String> approximateVoidProperties = Arrays.asList("entities", "distinctSubjects", "distinctObjects");
+
+  // with --sample, void:triples only for the partitions: a dataset wide COUNT(*) is usually answered from the indexes
+  private static List<String> sampledVoidProperties = Arrays.asList("triples", "entities", "distinctSubjects", "distinctObjects");
+
+  // queries computing all statistics of a folder, each returns a column per void property
+  private static Map<String, List<String>> combinedQueries = new HashMap<>();
+
+  static {
+    combinedQueries.put("4.6/", Collections.singletonList("combined.sparql"));
+    combinedQueries.put("4.5/class/", Collections.singletonList("combined.sparql"));
+    combinedQueries.put("4.5/property/", Arrays.asList("combined.sparql", "combinedTypes.sparql"));
+  }
+
+  // strategies whose result has a row for every partition, fan out only binds IRIs and sketches or samples are estimates
+  private static final List<String> completeStrategies = Arrays.asList("exact", "paged", "combined");
+
+  // sizes used by the fallback strategies when paging or fan out is not configured
+  private static final int fallbackPageSize = 1000;
+  private static final int fallbackFanOutSize = 100;
+
+  private final VoidSettings settings;
+  private final VoidModelBuilder voidModelBuilder;
+  private final QueryResultCache cache;
+  private final RunReport report = new RunReport();
+  private final StatisticsProvider provider;
+  private final ResultRegistry results = new ResultRegistry();
+  private final Set<String> estimatedStatistics = new ConcurrentSkipListSet<>();
+  private final Map<String, String> resultStrategies = new ConcurrentHashMap<>();
+
+  public VoidGenerator(SparqlEndpointClient client, VoidSettings settings) {
+    this.settings = settings;
+    this.voidModelBuilder = new VoidModelBuilder(settings);
+    this.provider = StatisticsProvider.create(client, report, settings);
+    this.cache = settings.getCacheDirectory() == null ? null
+                                                      : new QueryResultCache(settings.getCacheDirectory(), settings.getCacheTimeToLiveInHours(), settings.isRefresh());
+  }
+
+  @Override public VoidModelBuilder get() {
+    // all queries are started up front, results are merged in a fixed order on this thread
+    try (QueryScheduler scheduler = new QueryScheduler(settings.getParallelism())) {
+      if (settings.getPrevious() != null) return new IncrementalUpdate(scheduler, this::runUncached, settings).get();
+
+      CompletableFuture<Optional<QueryResult>> graphs = settings.isGraphSubsets() ? submitQuery(scheduler, null, "graphs.sparql", "g") : null;
+      CompletableFuture<Optional<QueryResult>> exampleResources = submitExampleResources(scheduler);
+      String vocabularyClasses = registerQuery(scheduler, "4.3/vocabularyClasses.sparql", "result");
+      String vocabularyProperties = registerQuery(scheduler, "4.3/vocabularyProperties.sparql", "result");
+      registerDerivations(null);
+
+      // partitions first, the vocabularies and 4.6 class and property counts can be derived from them
+      Map<String, CompletableFuture<Optional<QueryResult>>> classStatistics = submitStatistics(scheduler, null, "4.5/class/", "type",
+                                                                                               () -> results.fetch(vocabularyClasses));
+      Map<String, CompletableFuture<Optional<QueryResult>>> propertyStatistics = submitStatistics(scheduler, null, "4.5/property/", "property",
+                                                                                                  () -> results.fetch(vocabularyProperties));
+      Map<String, CompletableFuture<Optional<QueryResult>>> globalStatistics = submitStatistics(scheduler, null, "4.6/", null, null);
+      List<CompletableFuture<Optional<QueryResult>>> vocabularies = Arrays.asList(results.get(vocabularyClasses), results.get(vocabularyProperties));
+      Map<String, GraphStatistics> graphStatistics = graphs == null ? Collections.emptyMap()
+                                                                    : submitGraphStatistics(scheduler, graphs.join(), vocabularyClasses, vocabularyProperties);
+
+      if (settings.isApproximate()) voidModelBuilder.addApproximationComment(settings.getPrecision(), getSketchFraction());
+      if (settings.getSample() > 0) voidModelBuilder.addSampleComment(SampledQuery.getSampledFraction(settings.getSample()), SampledQuery.replicates);
+
+      addExampleResources(exampleResources.join()); // 4.1
+      vocabularies.forEach(vocabulary -> addVocabularies(vocabulary.join())); // 4.3
+
+      getGlobalStatistics(voidModelBuilder, globalStatistics); // 4.6
+      getClassStatistics(voidModelBuilder, classStatistics); // 4.5
+      getPropertyStatistics(voidModelBuilder, propertyStatistics); // 4.5
+
+      if (graphs != null) getGraphStatistics(graphStatistics);
+
+      if (!estimatedStatistics.isEmpty()) {
+        voidModelBuilder.addComment(String.format(Locale.ROOT, "HyperLogLog estimates with precision %d of a %.4f%% hash sample of the values " +
+                                                               "because the exact query failed: %s.",
+                                                  settings.getPrecision(), 100 * getSketchFraction(), String.join(", ", estimatedStatistics)));
+      }
     }
+
+    return voidModelBuilder;
   }
 
-  private final int timeout;
-  private final String sparqlEndpoint;
-  private final String datasetUri;
-  private final String uriSpace;
-  private final boolean useGraphs;
-  private final String settings;
+  /**
+   * Graph subsets run the 4.6 and 4.5 queries per named graph.
+   * Because a quads query only matches triples within one graph, the dataset wide void:triples are the sums of the graph ones.
+   */
+  private Map<String, GraphStatistics> submitGraphStatistics(QueryScheduler scheduler, Optional<QueryResult> graphs,
+                                                             String vocabularyClasses, String vocabularyProperties) {
+    Map<String, GraphStatistics> result = new TreeMap<>();
+    graphs.ifPresent(queryResult -> queryResult.rows().forEach(row -> {
+      String graph = row.getUri("g");
+      registerDerivations(graph);
+      Map<String, CompletableFuture<Optional<QueryResult>>> classes = submitStatistics(scheduler, graph, "4.5/class/", "type",
+                                                                                       () -> results.fetch(vocabularyClasses));
+      Map<String, CompletableFuture<Optional<QueryResult>>> properties = submitStatistics(scheduler, graph, "4.5/property/", "property",
+                                                                                          () -> results.fetch(vocabularyProperties));
+      result.put(graph, new GraphStatistics(submitStatistics(scheduler, graph, "4.6/", null, null), classes, properties));
+    }));
+    return result;
+  }
 
-  private final Model model = ModelFactory.createDefaultModel();
-  private final Map<String, Map<String, RDFNode>> typeVoidData = new HashMap<>();
-  private final Map<String, Map<String, RDFNode>> propertyVoidData = new HashMap<>();
+  private void getGraphStatistics(Map<String, GraphStatistics> graphStatistics) {
+    Map<String, Long> classTriples = new TreeMap<>();
+    Map<String, Long> propertyTriples = new TreeMap<>();
+    long triples = 0;
+    boolean complete = true;
 
+    for (Map.Entry<String, GraphStatistics> entry : graphStatistics.entrySet()) {
+      VoidModelBuilder subset = voidModelBuilder.addSubset(entry.getKey());
+      GraphStatistics statistics = entry.getValue();
 
-  public VoidGenerator(int timeout, String sparqlEndpoint, String datasetUri, String uriSpace, boolean useGraphs, String settings) {
-    this.timeout = timeout;
-    this.sparqlEndpoint = sparqlEndpoint;
-    this.datasetUri = datasetUri;
-    this.uriSpace = uriSpace;
-    this.useGraphs = useGraphs;
-    this.settings =  settings;
+      getGlobalStatistics(subset, statistics.global);
+      getClassStatistics(subset, statistics.classes);
+      getPropertyStatistics(subset, statistics.properties);
 
-    model.setNsPrefix("void", VOID.NS);
-  }
+      Optional<QueryResult> graphTriples = statistics.global.get("triples").join();
+      Optional<QueryResult> graphClassTriples = statistics.classes.get("triples").join();
+      Optional<QueryResult> graphPropertyTriples = statistics.properties.get("triples").join();
+      complete &= graphTriples.isPresent() && graphClassTriples.isPresent() && graphPropertyTriples.isPresent();
 
-  @Override public Model get() {
-    addSettingsAsComment(); // basic tool documentation
+      if (graphTriples.isPresent()) triples += getTotal(graphTriples.get());
+      graphClassTriples.ifPresent(queryResult -> sumTotals(queryResult, "type", classTriples));
+      graphPropertyTriples.ifPresent(queryResult -> sumTotals(queryResult, "property", propertyTriples));
+    }
 
-    addDatasetType();
-    addSparqlEndpoint(); // 3.2
-    addExampleResources(); // 4.1
-    addUriSpace(); // 4.2
-    addVocabularies(); // 4.3
+    if (!complete) {
+      log.warn("Not all graph subsets have triple counts, dataset triples are not derived from them.");
+      return;
+    }
 
-    getGlobalStatistics(); // 4.6
-    getClassStatistics(); // 4.5
-    getPropertyStatistics(); // 4.5
+    voidModelBuilder.addDatasetStatistic("triples", triples);
+    classTriples.forEach((type, total) -> voidModelBuilder.addClassStatistic(type, "triples", total));
+    propertyTriples.forEach((property, total) -> voidModelBuilder.addPropertyStatistic(property, "triples", total));
+  }
 
-    return model;
+  private static void sumTotals(QueryResult queryResult, String groupVariable, Map<String, Long> totals) {
+    queryResult.rows()
+            .filter(row -> row.getUri(groupVariable) != null)
+            .forEach(row -> totals.merge(row.getUri(groupVariable), row.getLong("total"), Long::sum));
   }
 
-  private void addDatasetType() {
-    model.add(ResourceFactory.createStatement(ResourceFactory.createResource(datasetUri),
-                                              RDF.type,
-                                              VOID.Dataset));
+  /**
+   * @param graph named graph to compute the statistics for, null for the whole dataset
+   * @param partitions classes or properties found by the 4.3 queries, used to bind the queries when fanning out, null for dataset statistics
+   */
+  private Map<String, CompletableFuture<Optional<QueryResult>>> submitStatistics(QueryScheduler scheduler, String graph, String folder, String groupVariable,
+                                                                                 Supplier<CompletableFuture<Optional<QueryResult>>> partitions) {
+    if (settings.isCombined()) return submitCombinedStatistics(scheduler, graph, folder, groupVariable, partitions);
+
+    Map<String, CompletableFuture<Optional<QueryResult>>> result = new LinkedHashMap<>();
+    PartitionStatistics.voidProperties.forEach(voidProperty -> {
+      // summed over the graph subsets instead
+      if (graph == null && settings.isGraphSubsets() && voidProperty.equals("triples")) return;
+
+      String sparqlName = getSparqlName(getQueryFolder() + folder + voidProperty + ".sparql", graph);
+      results.register(sparqlName, () -> submitStatistic(scheduler, graph, folder + voidProperty + ".sparql", voidProperty, groupVariable, partitions));
+      result.put(voidProperty, results.get(sparqlName));
+    });
+    return result;
   }
 
-  private void addSettingsAsComment() {
-    model.add(ResourceFactory.createStatement(ResourceFactory.createResource(datasetUri),
-                                              RDFS.comment,
-                                              ResourceFactory.createPlainLiteral(settings)));
+  /**
+   * Computes the statistics of a folder with a few queries that each scan the data once, instead of a query per statistic.
+   * The columns of the combined results are split into a result per void property, as the separate queries return them.
+   * A statistic of a combined query that failed is computed with its own query.
+   */
+  private Map<String, CompletableFuture<Optional<QueryResult>>> submitCombinedStatistics(QueryScheduler scheduler, String graph, String folder,
+                                                                                         String groupVariable,
+                                                                                         Supplier<CompletableFuture<Optional<QueryResult>>> partitions) {
+    List<CompletableFuture<Optional<QueryResult>>> combined = combinedQueries.get(folder).stream()
+            .map(resource -> partitions != null && settings.getFanOutSize() > 0
+                             ? submitFanOut(scheduler, graph, folder + resource, groupVariable, partitions, settings.getFanOutSize())
+                             : submitQuery(scheduler, graph, folder + resource, groupVariable))
+            .collect(Collectors.toList());
+
+    Map<String, CompletableFuture<Optional<QueryResult>>> result = new LinkedHashMap<>();
+    PartitionStatistics.voidProperties.forEach(voidProperty -> {
+      // summed over the graph subsets instead
+      if (graph == null && settings.isGraphSubsets() && voidProperty.equals("triples")) return;
+
+      CompletableFuture<Optional<QueryResult>> statistic = CompletableFuture.allOf(combined.toArray(new CompletableFuture<?>[0])).thenCompose(ignored -> {
+        Optional<QueryResult> column = combined.stream()
+                .map(CompletableFuture::join)
+                .filter(queryResult -> queryResult.isPresent() && queryResult.get().getVariables().contains(voidProperty))
+                .findFirst()
+                .map(queryResult -> getColumn(queryResult.get(), voidProperty, groupVariable));
+        if (column.isPresent()) {
+          resultStrategies.put(getSparqlName(getQueryFolder() + folder + voidProperty + ".sparql", graph),
+                               partitions != null && settings.getFanOutSize() > 0 ? "fan out" : "combined");
+          return CompletableFuture.completedFuture(column);
+        }
 
+        log.warn("Combined query failed for '{}', running its own query.", getSparqlName(getQueryFolder() + folder + voidProperty + ".sparql", graph));
+        return submitStatistic(scheduler, graph, folder + voidProperty + ".sparql", voidProperty, groupVariable, partitions);
+      });
+      results.put(getSparqlName(getQueryFolder() + folder + voidProperty + ".sparql", graph), statistic);
+      result.put(voidProperty, statistic);
+    });
+    return result;
   }
 
-  private void addVocabularies() {
-    Arrays.asList("4.3/vocabularyClasses.sparql", "4.3/vocabularyProperties.sparql")
-            .forEach(this::addVocabularies);
+  /**
+   * A separate query has no row for a class or property without values to count, so zero counts are left out.
+   */
+  private static QueryResult getColumn(QueryResult combined, String voidProperty, String groupVariable) {
+    QueryResult result = new QueryResult(groupVariable == null ? Collections.singletonList("total") : Arrays.asList("total", groupVariable));
+    combined.rows().forEach(row -> {
+      if (groupVariable == null) result.add(row.get(voidProperty));
+      else if (row.getLong(voidProperty) > 0) result.add(row.get(voidProperty), row.get(groupVariable));
+    });
+    return result;
   }
 
-  private void addVocabularies(String name) {
-    RunQuery.runFromResource(timeout, sparqlEndpoint, useGraphs, name).ifPresent(queryResult -> {
-      Set<String> vocabularies = queryResult.getRows().stream()
-              .map(row -> row.get("result").asResource().getURI())
-              .map(uri -> uri.contains("#") ? StringUtils.substringBeforeLast(uri, "#")
-                                            : StringUtils.substringBeforeLast(uri, "/") + "/")
-              .collect(Collectors.toSet());
+  /**
+   * The configured strategy runs first. With fallback on, a failed statistic is tried again with cheaper strategies, in order:
+   * paged, fanned out over the classes or properties and finally estimated with a HyperLogLog sketch.
+   * With --sample the statistics that scale with a sample are estimated from one, the others are counted exactly.
+   */
+  private CompletableFuture<Optional<QueryResult>> submitStatistic(QueryScheduler scheduler, String graph, String resource, String voidProperty,
+                                                                   String groupVariable, Supplier<CompletableFuture<Optional<QueryResult>>> partitions) {
+    boolean sketch = approximateVoidProperties.contains(voidProperty);
+    Map<String, Supplier<CompletableFuture<Optional<QueryResult>>>> strategies = new LinkedHashMap<>();
+
+    if (settings.getSample() > 0 && sampledVoidProperties.contains(voidProperty) && (groupVariable != null || !voidProperty.equals("triples"))) {
+      strategies.put("sample", () -> submitSample(scheduler, graph, resource, voidProperty, groupVariable));
+    }
+    else if (settings.isApproximate() && sketch) {
+      strategies.put("sketch", () -> scheduler.submit(() -> runSketch(graph, resource, groupVariable)));
+    }
+    else if (partitions != null && settings.getFanOutSize() > 0) {
+      strategies.put("fan out", () -> submitFanOut(scheduler, graph, resource, groupVariable, partitions, settings.getFanOutSize()));
+    }
+    else {
+      String strategy = groupVariable != null && settings.getPageSize() > 0 ? "paged" : "exact";
+      strategies.put(strategy, () -> submitQuery(scheduler, graph, resource, groupVariable, settings.getPageSize()));
+    }
+
+    if (settings.isFallback()) {
+      int pageSize = settings.getPageSize() > 0 ? settings.getPageSize() : fallbackPageSize;
+      int fanOutSize = settings.getFanOutSize() > 0 ? settings.getFanOutSize() : fallbackFanOutSize;
+      if (groupVariable != null) strategies.putIfAbsent("paged", () -> submitQuery(scheduler, graph, resource, groupVariable, pageSize));
+      if (partitions != null) strategies.putIfAbsent("fan out", () -> submitFanOut(scheduler, graph, resource, groupVariable, partitions, fanOutSize));
+      if (sketch) strategies.putIfAbsent("sketch", () -> scheduler.submit(() -> runSketch(graph, resource, groupVariable)).thenApply(result -> {
+        result.ifPresent(queryResult -> estimatedStatistics.add(getSparqlName(resource, graph)));
+        return result;
+      }));
+    }
 
-      vocabularies.forEach(vocabulary -> {
-        model.add(ResourceFactory.createStatement(ResourceFactory.createResource(datasetUri),
-                                                  VOID.vocabulary,
-                                                  ResourceFactory.createResource(vocabulary)));
-      });
-    });
+    return submitWithFallback(getSparqlName(getQueryFolder() + resource, graph), new ArrayList<>(strategies.entrySet()), 0);
   }
 
-  private void addSparqlEndpoint() {
-    model.add(ResourceFactory.createStatement(ResourceFactory.createResource(datasetUri),
-                                              VOID.sparqlEndpoint,
-                                              ResourceFactory.createResource(sparqlEndpoint)));
+  private CompletableFuture<Optional<QueryResult>> submitWithFallback(String sparqlName,
+                                                                      List<Map.Entry<String, Supplier<CompletableFuture<Optional<QueryResult>>>>> strategies,
+                                                                      int index) {
+    return strategies.get(index).getValue().get().thenCompose(result -> {
+      if (result.isPresent()) resultStrategies.put(sparqlName, strategies.get(index).getKey());
+      if (result.isPresent() || index + 1 == strategies.size()) return CompletableFuture.completedFuture(result);
 
+      log.warn("Strategy '{}' failed for '{}', falling back to '{}'.", strategies.get(index).getKey(), sparqlName, strategies.get(index + 1).getKey());
+      return submitWithFallback(sparqlName, strategies, index + 1);
+    });
   }
 
-  private void getGlobalStatistics() {
-    voidProperties.forEach(voidProperty -> addDatasetStatement(voidProperty, getTotal("4.6/" + voidProperty + ".sparql")));
+  private CompletableFuture<Optional<QueryResult>> submitFanOut(QueryScheduler scheduler, String graph, String resource, String groupVariable,
+                                                                Supplier<CompletableFuture<Optional<QueryResult>>> partitions, int fanOutSize) {
+    String sparqlName = getSparqlName(getQueryFolder() + resource, graph);
+    FanOutQuery fanOutQuery = new FanOutQuery(scheduler, this::runSparql, readQuery(getQueryFolder() + resource, graph), sparqlName,
+                                              groupVariable, fanOutSize);
+    return fanOutQuery.submit(partitions.get(), "result");
   }
 
-  private void addDatasetStatement(String property, RDFNode value) {
-    if (value == null) return;
+  /**
+   * Distinct objects are sampled on the objects, all other statistics on the subjects.
+   */
+  private CompletableFuture<Optional<QueryResult>> submitSample(QueryScheduler scheduler, String graph, String resource, String voidProperty,
+                                                                String groupVariable) {
+    String sparqlName = getSparqlName(getQueryFolder() + resource, graph);
+    String sampleVariable = voidProperty.equals("distinctObjects") ? "o" : "s";
+    SampledQuery sampledQuery = new SampledQuery((sparql, name) -> submitSparql(scheduler, sparql, name, groupVariable, settings.getPageSize()),
+                                                 readQuery(getQueryFolder() + resource, graph), sparqlName, groupVariable, sampleVariable,
+                                                 settings.getSample());
+    return sampledQuery.submit();
+  }
 
-    model.add(ResourceFactory.createStatement(ResourceFactory.createResource(datasetUri),
-                                              ResourceFactory.createProperty(VOID.NS, property),
-                                              value));
+  private CompletableFuture<Optional<QueryResult>> submitQuery(QueryScheduler scheduler, String graph, String resource, String groupVariable) {
+    return submitQuery(scheduler, graph, resource, groupVariable, settings.getPageSize());
   }
 
-  private void getClassStatistics() {
-    voidProperties.forEach(voidProperty -> fillTypeVoidData(voidProperty,
-                                                            runQuery("4.5/class/" + voidProperty + ".sparql")));
+  private CompletableFuture<Optional<QueryResult>> submitQuery(QueryScheduler scheduler, String graph, String resource, String groupVariable,
+                                                               int pageSize) {
+    String sparqlName = getQueryFolder() + resource;
+    return submitSparql(scheduler, readQuery(sparqlName, graph), getSparqlName(sparqlName, graph), groupVariable, pageSize);
+  }
 
-    typeVoidData.forEach((type, typeVoid) -> {
-      Resource classResource = ResourceFactory.createResource();
-      typeVoid.forEach((voidProperty, rdfNode) -> {
+  /**
+   * Restricts a quads query to one named graph.
+   */
+  private static String readQuery(String resource, String graph) {
+    String sparql = QueryTemplates.get(resource);
+    return graph == null ? sparql : sparql.replace("GRAPH ?g", "GRAPH <" + graph + ">");
+  }
 
-        model.add(ResourceFactory.createStatement(ResourceFactory.createResource(datasetUri),
-                                                  VOID.classPartition,
-                                                  classResource));
+  private static String getSparqlName(String sparqlName, String graph) {
+    return graph == null ? sparqlName : sparqlName + " <" + graph + ">";
+  }
 
-        model.add(ResourceFactory.createStatement(classResource,
-                                                  ResourceFactory.createProperty(VOID.NS, voidProperty),
-                                                  rdfNode));
+  /**
+   * @param groupVariable variable the query returns one row for, per class or property; results are paged on it when paging is on
+   */
+  private CompletableFuture<Optional<QueryResult>> submitSparql(QueryScheduler scheduler, String sparql, String sparqlName, String groupVariable,
+                                                                int pageSize) {
+    if (groupVariable == null || pageSize == 0) return scheduler.submit(() -> runSparql(sparql, sparqlName));
 
-        model.add(ResourceFactory.createStatement(classResource,
-                                                  VOID._class,
-                                                  ResourceFactory.createResource(type)));
+    return new PagedQuery(scheduler, this::runSparql, sparql, sparqlName, groupVariable, pageSize).submit();
+  }
 
-      });
-    });
+  /**
+   * @return name of the query in the result registry, started when first used
+   */
+  private String registerQuery(QueryScheduler scheduler, String resource, String groupVariable) {
+    String sparqlName = getQueryFolder() + resource;
+    results.register(sparqlName, () -> submitQuery(scheduler, null, resource, groupVariable));
+    return sparqlName;
   }
 
-  private void fillTypeVoidData(String property, Optional<QueryResult> queryResultOptional) {
-    queryResultOptional.ifPresent(
-            queryResult ->
-                    queryResult.getRows().forEach(row -> {
-                      RDFNode type = row.get("type");
-                      String typeUri = type.asResource().getURI();
+  /**
+   * Results the run fetches anyway replace queries scanning the same data again: the 4.3 vocabularies are the IRIs among the
+   * class and property partitions, the 4.6 class and property counts are the number of partitions.
+   * Only from a result with all partitions, else the query runs itself. Not with --sample, which misses partitions.
+   */
+  private void registerDerivations(String graph) {
+    if (settings.getSample() > 0) return;
+
+    String classTriples = getSparqlName(getQueryFolder() + "4.5/class/triples.sparql", graph);
+    String propertyTriples = getSparqlName(getQueryFolder() + "4.5/property/triples.sparql", graph);
+    if (graph == null) {
+      results.derive(getQueryFolder() + "4.3/vocabularyClasses.sparql", classTriples,
+                     ifComplete(classTriples, queryResult -> getIris(queryResult, "type")));
+      results.derive(getQueryFolder() + "4.3/vocabularyProperties.sparql", propertyTriples,
+                     ifComplete(propertyTriples, queryResult -> getIris(queryResult, "property")));
+    }
 
-                      if (!typeVoidData.containsKey(typeUri)) {
-                        typeVoidData.put(typeUri, new HashMap<>());
-                      }
+    // combined queries count them in the same scan as the other dataset statistics
+    if (settings.isCombined()) return;
 
-                      Map<String, RDFNode> voidData = typeVoidData.get(typeUri);
-                      voidData.put(property, row.get("total"));
-                    })
-    );
+    results.derive(getSparqlName(getQueryFolder() + "4.6/classes.sparql", graph), classTriples, ifComplete(classTriples, VoidGenerator::getRowCount));
+    results.derive(getSparqlName(getQueryFolder() + "4.6/properties.sparql", graph), propertyTriples,
+                   ifComplete(propertyTriples, VoidGenerator::getRowCount));
   }
 
-  private void getPropertyStatistics() {
-    voidProperties.forEach(voidProperty -> fillPropertyVoidData(voidProperty,
-                                                                runQuery("4.5/property/" + voidProperty + ".sparql")));
-
-    propertyVoidData.forEach((property, propertyVoid) -> {
-      Resource propertyResource = ResourceFactory.createResource();
-      propertyVoid.forEach((voidProperty, rdfNode) -> {
+  private Function<QueryResult, Optional<QueryResult>> ifComplete(String source, Function<QueryResult, QueryResult> derivation) {
+    return queryResult -> completeStrategies.contains(resultStrategies.get(source)) ? Optional.of(derivation.apply(queryResult))
+                                                                                    : Optional.empty();
+  }
 
-        model.add(ResourceFactory.createStatement(ResourceFactory.createResource(datasetUri),
-                                                  VOID.propertyPartition,
-                                                  propertyResource));
+  private static QueryResult getIris(QueryResult partitions, String groupVariable) {
+    QueryResult result = new QueryResult(Collections.singletonList("result"));
+    partitions.rows()
+            .filter(row -> row.get(groupVariable) != null && row.get(groupVariable).isURI())
+            .forEach(row -> result.add(row.get(groupVariable)));
+    return result;
+  }
 
-        model.add(ResourceFactory.createStatement(propertyResource,
-                                                  ResourceFactory.createProperty(VOID.NS, voidProperty),
-                                                  rdfNode));
+  private static QueryResult getRowCount(QueryResult partitions) {
+    QueryResult result = new QueryResult(Collections.singletonList("total"));
+    result.add(ResultTerms.integer(partitions.size()));
+    return result;
+  }
 
-        model.add(ResourceFactory.createStatement(propertyResource,
-                                                  VOID.property,
-                                                  ResourceFactory.createResource(property)));
+  private String getQueryFolder() {
+    return settings.isUseGraphs() ? "quads/" : "triples/";
+  }
 
-      });
+  private void addVocabularies(Optional<QueryResult> queryResultOptional) {
+    queryResultOptional.ifPresent(queryResult -> {
+      queryResult.rows().forEach(row -> voidModelBuilder.addVocabularyTerm(row.getUri("result")));
     });
   }
 
-  private void fillPropertyVoidData(String property, Optional<QueryResult> queryResultOptional) {
-    queryResultOptional.ifPresent(queryResult -> {
-      queryResult.getRows().forEach(row -> {
-        RDFNode propertyNode = row.get("property");
-        String propertyUri = propertyNode.asResource().getURI();
+  private void getGlobalStatistics(VoidModelBuilder builder, Map<String, CompletableFuture<Optional<QueryResult>>> statistics) {
+    statistics.forEach((voidProperty, queryResult) -> queryResult.join().ifPresent(result -> {
+      builder.addDatasetStatistic(voidProperty, getTotal(result));
+      if (hasInterval(result.getRow(0))) builder.addDatasetInterval(voidProperty, result.getRow(0).getLong("low"), result.getRow(0).getLong("high"));
+    }));
+  }
 
-        if (!propertyVoidData.containsKey(propertyUri)) {
-          propertyVoidData.put(propertyUri, new HashMap<>());
-        }
+  private void getClassStatistics(VoidModelBuilder builder, Map<String, CompletableFuture<Optional<QueryResult>>> statistics) {
+    statistics.forEach((voidProperty, queryResult) -> fillTypeVoidData(builder, voidProperty, queryResult.join()));
+  }
+
+  /**
+   * Like the dump statistics, a class that is not an IRI is counted in the dataset statistics but gets no partition.
+   */
+  private void fillTypeVoidData(VoidModelBuilder builder, String property, Optional<QueryResult> queryResultOptional) {
+    queryResultOptional.ifPresent(
+            queryResult ->
+                    queryResult.rows().filter(row -> row.getUri("type") != null).forEach(row -> {
+                      builder.addClassStatistic(row.getUri("type"), property, row.getLong("total"));
+                      if (hasInterval(row)) builder.addClassInterval(row.getUri("type"), property, row.getLong("low"), row.getLong("high"));
+                    })
+    );
+  }
 
-        Map<String, RDFNode> voidData = propertyVoidData.get(propertyUri);
-        voidData.put(property, row.get("total"));
+  private void getPropertyStatistics(VoidModelBuilder builder, Map<String, CompletableFuture<Optional<QueryResult>>> statistics) {
+    statistics.forEach((voidProperty, queryResult) -> fillPropertyVoidData(builder, voidProperty, queryResult.join()));
+  }
+
+  private void fillPropertyVoidData(VoidModelBuilder builder, String property, Optional<QueryResult> queryResultOptional) {
+    queryResultOptional.ifPresent(queryResult -> {
+      queryResult.rows().filter(row -> row.getUri("property") != null).forEach(row -> {
+        builder.addPropertyStatistic(row.getUri("property"), property, row.getLong("total"));
+        if (hasInterval(row)) builder.addPropertyInterval(row.getUri("property"), property, row.getLong("low"), row.getLong("high"));
       });
     });
   }
 
-  private void addExampleResources() {
-    String sparqlName = (useGraphs ? "quads" : "triples") +  "/4.1/exampleResources.sparql";
-    String uriSpaceFilter = StringUtils.isBlank(uriSpace) ? ""
-                                                          : "\n && (STRSTARTS(STR(?s), '" + uriSpace + "') )";
-    String sparql = MessageFormatter.format(readQuery(sparqlName), uriSpaceFilter).getMessage();
+  private CompletableFuture<Optional<QueryResult>> submitExampleResources(QueryScheduler scheduler) {
+    String sparqlName = getQueryFolder() + "4.1/exampleResources.sparql";
+    String uriSpaceFilter = StringUtils.isBlank(settings.getUriSpace()) ? ""
+                                                                        : "\n && (STRSTARTS(STR(?s), '" + settings.getUriSpace() + "') )";
+    String sparql = MessageFormatter.format(QueryTemplates.get(sparqlName), uriSpaceFilter).getMessage();
 //    log.debug("SPARQL: {}", sparql);
-    RunQuery.runFromSparql(timeout, sparqlEndpoint, sparql, sparqlName).ifPresent(
-            queryResult -> {
-              List<Resource> uris = queryResult.getRows().stream()
-                      .map(row -> row.get("example").asResource())
-                      .collect(Collectors.toList());
-
-              uris.forEach(uri -> {
-                model.add(ResourceFactory.createStatement(ResourceFactory.createResource(datasetUri),
-                                                          VOID.exampleResource,
-                                                          uri));
-              });
-            }
+    return submitSparql(scheduler, sparql, sparqlName, "type", settings.getPageSize());
+  }
+
+  private void addExampleResources(Optional<QueryResult> queryResultOptional) {
+    queryResultOptional.ifPresent(
+            queryResult -> queryResult.rows().forEach(row -> voidModelBuilder.addExampleResource(row.getUri("example")))
     );
   }
 
-  private void addUriSpace() {
-    if (StringUtils.isNotBlank(uriSpace)) {
-      model.add(ResourceFactory.createStatement(ResourceFactory.createResource(datasetUri),
-                                                VOID.uriSpace,
-                                                ResourceFactory.createPlainLiteral(uriSpace)));
+  public RunReport getRunReport() {
+    return report;
+  }
+
+  private Optional<QueryResult> runSparql(String sparql, String sparqlName) {
+    return cached(sparql, sparqlName, () -> runUncached(sparql, sparqlName));
+  }
+
+  private Optional<QueryResult> runUncached(String sparql, String sparqlName) {
+    return provider.select(sparql, sparqlName);
+  }
+
+  /**
+   * Only successful results are cached, a failed query is executed again on the next run.
+   *
+   * @param cacheKey SPARQL text, or anything else the result depends on
+   */
+  private Optional<QueryResult> cached(String cacheKey, String sparqlName, Supplier<Optional<QueryResult>> query) {
+    if (cache == null) return query.get();
+
+    QueryStatistics statistics = report.start(sparqlName);
+    Optional<QueryResult> cachedResult = cache.get(provider.getSource(), settings.isUseGraphs(), cacheKey, sparqlName);
+    if (cachedResult.isPresent()) {
+      statistics.cached(cachedResult.get().size());
+      report.finish(statistics);
+      return cachedResult;
     }
+
+    Optional<QueryResult> queryResult = query.get();
+    queryResult.ifPresent(result -> cache.put(provider.getSource(), settings.isUseGraphs(), cacheKey, result));
+    return queryResult;
   }
 
-  private Optional<QueryResult> runQuery(String resource) {
-    return RunQuery.runFromResource(timeout, sparqlEndpoint, useGraphs, resource);
+  /**
+   * Streams the values to count instead of counting them on the endpoint, they are counted in a HyperLogLog sketch.
+   * Only a hash sample of the values is streamed, a stream of all values would be larger than the data the count scans.
+   */
+  private Optional<QueryResult> runSketch(String graph, String resource, String groupVariable) {
+    String sparql = SampledQuery.getStreamSampleSparql(readQuery(getQueryFolder() + "approximate/" + resource, graph), "value",
+                                                       settings.getSketchSample());
+    String sparqlName = getSparqlName(getQueryFolder() + "approximate/" + resource, graph);
+    return cached(sparql + "\n# precision " + settings.getPrecision(), sparqlName, () -> {
+      SketchAggregator sketchAggregator = new SketchAggregator(groupVariable, settings.getPrecision(), getSketchFraction());
+      boolean success = provider.stream(sparql, sparqlName, sketchAggregator);
+      return success ? Optional.of(sketchAggregator.getQueryResult()) : Optional.empty();
+    });
+  }
+
+  private double getSketchFraction() {
+    return Math.min(1, SampledQuery.getSampledFraction(settings.getSketchSample()));
   }
 
-  private RDFNode getTotal(String resource) {
-    QueryResult queryResult = runQuery(resource).orElse(null);
+  private static class GraphStatistics {
+
+    private final Map<String, CompletableFuture<Optional<QueryResult>>> global;
+    private final Map<String, CompletableFuture<Optional<QueryResult>>> classes;
+    private final Map<String, CompletableFuture<Optional<QueryResult>>> properties;
+
+    private GraphStatistics(Map<String, CompletableFuture<Optional<QueryResult>>> global,
+                            Map<String, CompletableFuture<Optional<QueryResult>>> classes,
+                            Map<String, CompletableFuture<Optional<QueryResult>>> properties) {
+      this.global = global;
+      this.classes = classes;
+      this.properties = properties;
+    }
+  }
+
+  /**
+   * Sample estimates have the bounds of their confidence interval as low and high.
+   */
+  private static boolean hasInterval(QueryResult.Row row) {
+    return row.get("low") != null;
+  }
 
-    if (queryResult == null) return null;
-    return queryResult.getRows().get(0).get("total");
+  private static long getTotal(QueryResult queryResult) {
+    return queryResult.getRow(0).getLong("total");
   }
 
 }
@@ -0,0 +1,100 @@
+package zone.cogni.void_tool;
+
+import java.time.Instant;
+
+/**
+ * A generation run of the VoID server, as returned by the REST API.
+ */
+public class VoidJob {
+
+  public enum Status {
+    queued, running, done, failed
+  }
+
+  private final String id;
+  private final VoidJobRequest request;
+  private final String scheduleId;
+  private final Instant submitted = Instant.now();
+
+  private volatile Status status = Status.queued;
+  private volatile Instant started;
+  private volatile Instant finished;
+  private volatile long triples;
+  private volatile int queries;
+  private volatile int failedQueries;
+  private volatile String error;
+
+  VoidJob(String id, VoidJobRequest request, String scheduleId) {
+    this.id = id;
+    this.request = request;
+    this.scheduleId = scheduleId;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public VoidJobRequest getRequest() {
+    return request;
+  }
+
+  /**
+   * @return id of the schedule that started the job, null for a posted job
+   */
+  public String getScheduleId() {
+    return scheduleId;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public String getSubmitted() {
+    return submitted.toString();
+  }
+
+  public String getStarted() {
+    return started == null ? null : started.toString();
+  }
+
+  public String getFinished() {
+    return finished == null ? null : finished.toString();
+  }
+
+  public long getTriples() {
+    return triples;
+  }
+
+  public int getQueries() {
+    return queries;
+  }
+
+  public int getFailedQueries() {
+    return failedQueries;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  void started() {
+    status = Status.running;
+    started = Instant.now();
+  }
+
+  void done(long triples, RunReport report) {
+    this.triples = triples;
+    if (report != null) {
+      queries = report.getQueries().size();
+      failedQueries = (int) report.getQueries().stream().filter(query -> !query.isSuccess()).count();
+    }
+    finished = Instant.now();
+    status = Status.done;
+  }
+
+  void failed(String error) {
+    this.error = error;
+    finished = Instant.now();
+    status = Status.failed;
+  }
+}
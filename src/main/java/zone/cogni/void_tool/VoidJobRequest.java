@@ -0,0 +1,72 @@
+package zone.cogni.void_tool;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Body of a job or schedule posted to the VoID server.
+ * The options are the command line options without their dashes, for example {"pageSize": "1000", "useGraphs": "true"}.
+ */
+public class VoidJobRequest {
+
+  private String datasetUri;
+  private String sparqlEndpoint;
+  private Map<String, String> options = new LinkedHashMap<>();
+  private String cron;
+
+  public String getDatasetUri() {
+    return datasetUri;
+  }
+
+  public void setDatasetUri(String datasetUri) {
+    this.datasetUri = datasetUri;
+  }
+
+  public String getSparqlEndpoint() {
+    return sparqlEndpoint;
+  }
+
+  public void setSparqlEndpoint(String sparqlEndpoint) {
+    this.sparqlEndpoint = sparqlEndpoint;
+  }
+
+  public Map<String, String> getOptions() {
+    return options;
+  }
+
+  public void setOptions(Map<String, String> options) {
+    this.options = options == null ? new LinkedHashMap<>() : options;
+  }
+
+  /**
+   * @return Spring cron expression with seconds, for example "0 0 6,18 * * *", only used for schedules
+   */
+  public String getCron() {
+    return cron;
+  }
+
+  public void setCron(String cron) {
+    this.cron = cron;
+  }
+
+  /**
+   * @return the request as command line arguments
+   */
+  @JsonIgnore
+  public List<String> getArguments() {
+    List<String> result = new ArrayList<>();
+    if (datasetUri != null) addArgument(result, "datasetUri", datasetUri);
+    if (sparqlEndpoint != null) addArgument(result, "sparqlEndpoint", sparqlEndpoint);
+    options.forEach((option, value) -> addArgument(result, option, value));
+    return result;
+  }
+
+  private static void addArgument(List<String> arguments, String option, String value) {
+    arguments.add(option.startsWith("--") ? option : "--" + option);
+    arguments.add(value);
+  }
+}
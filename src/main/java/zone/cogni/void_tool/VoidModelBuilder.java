@@ -0,0 +1,255 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.VOID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the statistics of a dataset, wherever they were computed, and turns them into VoID.
+ * The VoID is written triple by triple to a {@link StreamRDF}, a partition at a time, or collected in a model.
+ */
+public class VoidModelBuilder implements Supplier<Model> {
+
+  private static final List<Node> voidNodes = PartitionStatistics.voidProperties.stream()
+          .map(voidProperty -> NodeFactory.createURI(VOID.NS + voidProperty))
+          .collect(Collectors.toList());
+
+  private final VoidSettings settings;
+  private final String datasetUri;
+
+  private final List<String> comments = new ArrayList<>();
+  private final long[] datasetVoidData = new long[PartitionStatistics.voidProperties.size()];
+  private final Set<String> exampleResources = new TreeSet<>();
+  private final Set<String> vocabularies = new TreeSet<>();
+  private final PartitionStatistics typeVoidData = new PartitionStatistics();
+  private final PartitionStatistics propertyVoidData = new PartitionStatistics();
+  private final Map<String, VoidModelBuilder> subsets = new TreeMap<>();
+  private final List<String> datasetIntervals = new ArrayList<>();
+  private final Map<String, List<String>> typeIntervals = new HashMap<>();
+  private final Map<String, List<String>> propertyIntervals = new HashMap<>();
+
+  public VoidModelBuilder(VoidSettings settings) {
+    this(settings, settings.getDatasetUri());
+  }
+
+  private VoidModelBuilder(VoidSettings settings, String datasetUri) {
+    this.settings = settings;
+    this.datasetUri = datasetUri;
+    Arrays.fill(datasetVoidData, PartitionStatistics.missing);
+  }
+
+  /**
+   * @return builder for the statistics of a subset of this dataset, written as void:subset
+   */
+  public VoidModelBuilder addSubset(String uri) {
+    return subsets.computeIfAbsent(uri, key -> new VoidModelBuilder(settings, uri));
+  }
+
+  public void addExampleResource(String uri) {
+    exampleResources.add(uri);
+  }
+
+  /**
+   * @param termUri class or property, its namespace is added as vocabulary
+   */
+  public void addVocabularyTerm(String termUri) {
+    vocabularies.add(termUri.contains("#") ? StringUtils.substringBeforeLast(termUri, "#")
+                                           : StringUtils.substringBeforeLast(termUri, "/") + "/");
+  }
+
+  public void addComment(String comment) {
+    comments.add(comment);
+  }
+
+  public void addApproximationComment(int precision) {
+    addComment(String.format(Locale.ROOT,
+                             "Approximate statistics: void:entities, void:distinctSubjects and void:distinctObjects are HyperLogLog estimates " +
+                             "with precision %d, relative standard error %.2f%%.",
+                             precision, 100 * HyperLogLog.getStandardError(precision)));
+  }
+
+  /**
+   * For sketches of a hash sample of the values, the sampling adds a relative standard error of about sqrt((1 - f) / (f n)) for n distinct values.
+   */
+  public void addApproximationComment(int precision, double fraction) {
+    if (fraction >= 1) {
+      addApproximationComment(precision);
+      return;
+    }
+
+    addComment(String.format(Locale.ROOT,
+                             "Approximate statistics: void:entities, void:distinctSubjects and void:distinctObjects are HyperLogLog estimates " +
+                             "with precision %d, relative standard error %.2f%%, of a %.4f%% sample of the values selected on their MD5 hash. " +
+                             "The sample adds a relative standard error of about sqrt(%.1f / n) for n distinct values, blank nodes are not sampled.",
+                             precision, 100 * HyperLogLog.getStandardError(precision), 100 * fraction, (1 - fraction) / fraction));
+  }
+
+  public void addSampleComment(double fraction, int replicates) {
+    addComment(String.format(Locale.ROOT,
+                             "Sample estimates: void:entities, void:distinctSubjects, void:distinctObjects and the void:triples of the partitions " +
+                             "are scaled from a %.4f%% sample of the subjects, of the objects for void:distinctObjects, selected on their MD5 hash " +
+                             "in %d replicates, blank nodes are counted exactly. Comments of the dataset and partitions give 95%% confidence intervals.",
+                             100 * fraction, replicates));
+  }
+
+  public void addDatasetStatistic(String voidProperty, long value) {
+    datasetVoidData[PartitionStatistics.getColumn(voidProperty)] = value;
+  }
+
+  public void addClassStatistic(String type, String voidProperty, long value) {
+    typeVoidData.set(type, voidProperty, value);
+  }
+
+  public void addPropertyStatistic(String property, String voidProperty, long value) {
+    propertyVoidData.set(property, voidProperty, value);
+  }
+
+  /**
+   * Bounds of the confidence interval of an estimated statistic, written as comment of the dataset or partition.
+   */
+  public void addDatasetInterval(String voidProperty, long low, long high) {
+    datasetIntervals.add(getIntervalComment(voidProperty, low, high));
+  }
+
+  public void addClassInterval(String type, String voidProperty, long low, long high) {
+    typeIntervals.computeIfAbsent(type, key -> new ArrayList<>()).add(getIntervalComment(voidProperty, low, high));
+  }
+
+  public void addPropertyInterval(String property, String voidProperty, long low, long high) {
+    propertyIntervals.computeIfAbsent(property, key -> new ArrayList<>()).add(getIntervalComment(voidProperty, low, high));
+  }
+
+  private static String getIntervalComment(String voidProperty, long low, long high) {
+    return "Estimated void:" + voidProperty + ", 95% confidence interval " + low + " to " + high + ".";
+  }
+
+  @Override public Model get() {
+    Model model = ModelFactory.createDefaultModel();
+    write(StreamRDFLib.graph(model.getGraph()));
+    model.setNsPrefix("void", VOID.NS);
+    return model;
+  }
+
+  /**
+   * Sends the VoID to the stream, without calling start or finish on it.
+   */
+  public void write(StreamRDF output) {
+    output.prefix("void", VOID.NS);
+    Node dataset = NodeFactory.createURI(datasetUri);
+
+    addSettingsAsComment(output, dataset); // basic tool documentation
+    comments.forEach(comment -> output.triple(Triple.create(dataset, RDFS.comment.asNode(), NodeFactory.createLiteral(comment))));
+
+    addDatasetType(output, dataset);
+    addSparqlEndpoint(output, dataset); // 3.2
+    addDatasetStatistics(output, dataset); // 4.6
+    addExampleResources(output, dataset); // 4.1
+    addUriSpace(output, dataset); // 4.2
+    addVocabularies(output, dataset); // 4.3
+
+    addClassPartitions(output, dataset); // 4.5
+    addPropertyPartitions(output, dataset); // 4.5
+
+    addSubsets(output, dataset);
+  }
+
+  private void addSubsets(StreamRDF output, Node dataset) {
+    subsets.forEach((uri, subset) -> {
+      Node subsetNode = NodeFactory.createURI(uri);
+      output.triple(Triple.create(dataset, VOID.subset.asNode(), subsetNode));
+
+      subset.addDatasetType(output, subsetNode);
+      subset.addDatasetStatistics(output, subsetNode);
+      subset.addClassPartitions(output, subsetNode);
+      subset.addPropertyPartitions(output, subsetNode);
+    });
+  }
+
+  private void addDatasetType(StreamRDF output, Node dataset) {
+    output.triple(Triple.create(dataset, RDF.type.asNode(), VOID.Dataset.asNode()));
+  }
+
+  private void addSettingsAsComment(StreamRDF output, Node dataset) {
+    output.triple(Triple.create(dataset, RDFS.comment.asNode(), NodeFactory.createLiteral(settings.toString())));
+  }
+
+  private void addSparqlEndpoint(StreamRDF output, Node dataset) {
+    if (StringUtils.isBlank(settings.getSparqlEndpoint())) return;
+
+    output.triple(Triple.create(dataset, VOID.sparqlEndpoint.asNode(), NodeFactory.createURI(settings.getSparqlEndpoint())));
+  }
+
+  private void addDatasetStatistics(StreamRDF output, Node dataset) {
+    for (int column = 0; column < datasetVoidData.length; column++) {
+      if (datasetVoidData[column] != PartitionStatistics.missing) {
+        output.triple(Triple.create(dataset, voidNodes.get(column), ResultTerms.integer(datasetVoidData[column])));
+      }
+    }
+    addComments(output, dataset, datasetIntervals);
+  }
+
+  private static void addComments(StreamRDF output, Node node, List<String> comments) {
+    comments.forEach(comment -> output.triple(Triple.create(node, RDFS.comment.asNode(), NodeFactory.createLiteral(comment))));
+  }
+
+  private void addExampleResources(StreamRDF output, Node dataset) {
+    exampleResources.forEach(uri -> output.triple(Triple.create(dataset, VOID.exampleResource.asNode(), NodeFactory.createURI(uri))));
+  }
+
+  private void addUriSpace(StreamRDF output, Node dataset) {
+    if (StringUtils.isNotBlank(settings.getUriSpace())) {
+      output.triple(Triple.create(dataset, VOID.uriSpace.asNode(), NodeFactory.createLiteral(settings.getUriSpace())));
+    }
+  }
+
+  private void addVocabularies(StreamRDF output, Node dataset) {
+    vocabularies.forEach(vocabulary -> output.triple(Triple.create(dataset, VOID.vocabulary.asNode(), NodeFactory.createURI(vocabulary))));
+  }
+
+  private void addClassPartitions(StreamRDF output, Node dataset) {
+    addPartitions(output, dataset, VOID.classPartition.asNode(), VOID._class.asNode(), typeVoidData, typeIntervals);
+  }
+
+  private void addPropertyPartitions(StreamRDF output, Node dataset) {
+    addPartitions(output, dataset, VOID.propertyPartition.asNode(), VOID.property.asNode(), propertyVoidData, propertyIntervals);
+  }
+
+  /**
+   * Nodes are only created here, one partition at a time.
+   */
+  private static void addPartitions(StreamRDF output, Node dataset, Node partitionProperty, Node partitionTermProperty,
+                                    PartitionStatistics statistics, Map<String, List<String>> intervals) {
+    for (int id : statistics.getSortedIds()) {
+      Node partition = NodeFactory.createBlankNode();
+      output.triple(Triple.create(dataset, partitionProperty, partition));
+      output.triple(Triple.create(partition, partitionTermProperty, NodeFactory.createURI(statistics.getTerm(id))));
+
+      for (int column = 0; column < voidNodes.size(); column++) {
+        long value = statistics.get(id, column);
+        if (value != PartitionStatistics.missing) output.triple(Triple.create(partition, voidNodes.get(column), ResultTerms.integer(value)));
+      }
+      addComments(output, partition, intervals.getOrDefault(statistics.getTerm(id), Collections.emptyList()));
+    }
+  }
+}
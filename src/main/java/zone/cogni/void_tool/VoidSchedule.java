@@ -0,0 +1,43 @@
+package zone.cogni.void_tool;
+
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * A job request the VoID server submits again each time its cron expression fires.
+ */
+public class VoidSchedule {
+
+  private final String id;
+  private final VoidJobRequest request;
+  private volatile ScheduledFuture<?> future;
+  private volatile String lastJobId;
+
+  VoidSchedule(String id, VoidJobRequest request) {
+    this.id = id;
+    this.request = request;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public VoidJobRequest getRequest() {
+    return request;
+  }
+
+  public String getLastJobId() {
+    return lastJobId;
+  }
+
+  void setLastJobId(String lastJobId) {
+    this.lastJobId = lastJobId;
+  }
+
+  void setFuture(ScheduledFuture<?> future) {
+    this.future = future;
+  }
+
+  void cancel() {
+    if (future != null) future.cancel(false);
+  }
+}
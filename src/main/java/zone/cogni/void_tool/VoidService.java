@@ -0,0 +1,228 @@
+package zone.cogni.void_tool;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the jobs of the VoID server on a bounded pool of workers and keeps the latest VoID per dataset.
+ * All jobs share one connection pool, so connections to an endpoint are reused from one job to the next.
+ */
+@Service
+@ConditionalOnWebApplication
+public class VoidService {
+
+  private static final Logger log = LoggerFactory.getLogger(VoidService.class);
+
+  private static final int maxJobHistory = 1000;
+
+  // options that only change the queries sent to the endpoint; options reading or writing local files are command line only
+  private static final List<String> remoteOptions = Arrays.asList("--datasetUri", "--sparqlEndpoint", "--uriSpace", "--useGraphs", "--graphSubsets",
+                                                                  "--format", "--timeout", "--parallelism", "--pageSize", "--fanOutSize",
+                                                                  "--combined", "--approximate", "--precision", "--sketchSample", "--sample",
+                                                                  "--retries", "--retryDelay", "--fallback");
+
+  private final ThreadPoolExecutor workers;
+  private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+  private final SparqlEndpointClient client;
+
+  private final AtomicLong ids = new AtomicLong();
+  private final Map<String, VoidJob> jobs = Collections.synchronizedMap(new LinkedHashMap<String, VoidJob>() {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, VoidJob> eldest) {
+      return size() > maxJobHistory;
+    }
+  });
+  private final Map<String, VoidSchedule> schedules = new ConcurrentHashMap<>();
+  private final Map<String, GeneratedVoid> latest = new ConcurrentHashMap<>();
+
+  public VoidService(ServerSettings serverSettings) {
+    workers = new ThreadPoolExecutor(serverSettings.getWorkers(), serverSettings.getWorkers(), 0, TimeUnit.MILLISECONDS,
+                                     new ArrayBlockingQueue<>(serverSettings.getQueueSize()));
+    client = new SparqlEndpointClient(serverSettings.getWorkers() * new VoidSettings().getParallelism());
+    scheduler.setThreadNamePrefix("void-schedule-");
+    scheduler.initialize();
+  }
+
+  /**
+   * @throws IllegalArgumentException if the request has invalid options
+   * @throws RejectedExecutionException if too many jobs are waiting
+   */
+  public VoidJob submit(VoidJobRequest request) {
+    return submit(request, null);
+  }
+
+  private VoidJob submit(VoidJobRequest request, String scheduleId) {
+    VoidSettings settings = getSettings(request);
+    VoidJob job = new VoidJob(String.valueOf(ids.incrementAndGet()), request, scheduleId);
+    workers.execute(() -> run(job, settings));
+    jobs.put(job.getId(), job);
+    log.info("Job {} queued for '{}'.", job.getId(), settings.getDatasetUri());
+    return job;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the request has invalid options or cron expression
+   */
+  public VoidSchedule schedule(VoidJobRequest request) {
+    getSettings(request);
+    VoidSchedule schedule = new VoidSchedule(String.valueOf(ids.incrementAndGet()), request);
+    schedule.setFuture(scheduler.schedule(() -> submitScheduled(schedule), new CronTrigger(request.getCron())));
+    schedules.put(schedule.getId(), schedule);
+    log.info("Schedule {} added for '{}' at '{}'.", schedule.getId(), request.getDatasetUri(), request.getCron());
+    return schedule;
+  }
+
+  public Optional<VoidSchedule> cancelSchedule(String id) {
+    VoidSchedule schedule = schedules.remove(id);
+    if (schedule != null) schedule.cancel();
+    return Optional.ofNullable(schedule);
+  }
+
+  public List<VoidSchedule> getSchedules() {
+    return new ArrayList<>(schedules.values());
+  }
+
+  public List<VoidJob> getJobs() {
+    synchronized (jobs) {
+      return new ArrayList<>(jobs.values());
+    }
+  }
+
+  public Optional<VoidJob> getJob(String id) {
+    return Optional.ofNullable(jobs.get(id));
+  }
+
+  public Optional<GeneratedVoid> getLatest(String datasetUri) {
+    return Optional.ofNullable(latest.get(datasetUri));
+  }
+
+  private void submitScheduled(VoidSchedule schedule) {
+    try {
+      schedule.setLastJobId(submit(schedule.getRequest(), schedule.getId()).getId());
+    }
+    catch (RuntimeException e) {
+      log.warn("Schedule {} could not submit a job. {}", schedule.getId(), e.getMessage());
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException for an option that is not allowed in a job, like --input, --tdb2 or --cache
+   */
+  private static VoidSettings getSettings(VoidJobRequest request) {
+    VoidSettings settings = new VoidSettings();
+    List<String> arguments = request.getArguments();
+    for (int i = 0; i < arguments.size() - 1; i += 2) {
+      if (!remoteOptions.contains(arguments.get(i))) {
+        throw new IllegalArgumentException("Option '" + arguments.get(i).substring(2) + "' is not allowed in a job, only on the command line.");
+      }
+      Main.setArgument(settings, arguments.get(i), arguments.get(i + 1));
+    }
+
+    List<String> invalidParameters = Main.getInvalidParameters(settings);
+    if (!invalidParameters.isEmpty()) throw new IllegalArgumentException(String.join(" ", invalidParameters));
+    return settings;
+  }
+
+  private void run(VoidJob job, VoidSettings settings) {
+    job.started();
+    log.info("Job {} started for '{}'.", job.getId(), settings.getDatasetUri());
+    try {
+      VoidGenerator voidGenerator = new VoidGenerator(client, settings);
+      VoidModelBuilder voidModelBuilder = voidGenerator.get();
+
+      VoidWriter voidWriter = new VoidWriter(settings);
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      long triples = voidWriter.write(voidModelBuilder, output);
+
+      latest.merge(settings.getDatasetUri(), new GeneratedVoid(job.getId(), output.toByteArray(), voidWriter.getContentType()),
+                   GeneratedVoid::replace);
+      job.done(triples, voidGenerator.getRunReport());
+      log.info("Job {} done, {} triples for '{}'.", job.getId(), triples, settings.getDatasetUri());
+    }
+    catch (Exception e) {
+      log.error("Job {} failed for '{}'.", job.getId(), settings.getDatasetUri(), e);
+      job.failed(e.getClass().getSimpleName() + ": " + e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    scheduler.shutdown();
+    workers.shutdownNow();
+    client.close();
+  }
+
+  /**
+   * Latest VoID of a dataset, the ETag is a hash of the content.
+   */
+  public static class GeneratedVoid {
+
+    private final String jobId;
+    private final byte[] content;
+    private final String contentType;
+    private final String etag;
+    private final long lastModified;
+
+    private GeneratedVoid(String jobId, byte[] content, String contentType) {
+      this(jobId, content, contentType, System.currentTimeMillis());
+    }
+
+    private GeneratedVoid(String jobId, byte[] content, String contentType, long lastModified) {
+      this.jobId = jobId;
+      this.content = content;
+      this.contentType = contentType;
+      this.etag = "\"" + DigestUtils.sha256Hex(content).substring(0, 32) + "\"";
+      this.lastModified = lastModified;
+    }
+
+    /**
+     * Keeps the modification time when the content did not change, so clients revalidating by date get a 304.
+     */
+    private static GeneratedVoid replace(GeneratedVoid previous, GeneratedVoid current) {
+      if (!previous.etag.equals(current.etag)) return current;
+      return new GeneratedVoid(current.jobId, current.content, current.contentType, previous.lastModified);
+    }
+
+    public String getJobId() {
+      return jobId;
+    }
+
+    public byte[] getContent() {
+      return content;
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+  }
+}
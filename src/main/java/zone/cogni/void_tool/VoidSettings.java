@@ -0,0 +1,427 @@
+package zone.cogni.void_tool;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Options of a single VoID generation run.
+ */
+public class VoidSettings {
+
+  private String datasetUri;
+  private String sparqlEndpoint;
+  private String tdb2;
+  private int timeoutInSeconds = 300;
+  private String format = "TURTLE";
+  private String file = "dataset.ttl";
+  private String uriSpace = "";
+  private boolean useGraphs;
+  private boolean graphSubsets;
+  private int parallelism = 4;
+  private int pageSize;
+  private int fanOutSize;
+  private List<String> input = Collections.emptyList();
+  private int shardIndex;
+  private int shardCount;
+  private List<String> merge = Collections.emptyList();
+  private boolean approximate;
+  private int precision = 14;
+  private double sketchSample = 0.01;
+  private String cacheDirectory;
+  private long cacheTimeToLiveInHours = 24;
+  private boolean refresh;
+  private boolean summary;
+  private int retries = 2;
+  private long retryDelayMillis = 1000;
+  private boolean fallback = true;
+  private boolean combined;
+  private double sample;
+  private String previous;
+  private List<String> added = Collections.emptyList();
+  private List<String> removed = Collections.emptyList();
+  private List<String> patch = Collections.emptyList();
+
+  public String getDatasetUri() {
+    return datasetUri;
+  }
+
+  public VoidSettings setDatasetUri(String datasetUri) {
+    this.datasetUri = datasetUri;
+    return this;
+  }
+
+  public String getSparqlEndpoint() {
+    return sparqlEndpoint;
+  }
+
+  public VoidSettings setSparqlEndpoint(String sparqlEndpoint) {
+    this.sparqlEndpoint = sparqlEndpoint;
+    return this;
+  }
+
+  /**
+   * @return directory of a local TDB2 database queried in process instead of the SPARQL endpoint
+   */
+  public String getTdb2() {
+    return tdb2;
+  }
+
+  public VoidSettings setTdb2(String tdb2) {
+    this.tdb2 = tdb2;
+    return this;
+  }
+
+  public int getTimeoutInSeconds() {
+    return timeoutInSeconds;
+  }
+
+  public VoidSettings setTimeoutInSeconds(int timeoutInSeconds) {
+    this.timeoutInSeconds = timeoutInSeconds;
+    return this;
+  }
+
+  public String getFormat() {
+    return format;
+  }
+
+  public VoidSettings setFormat(String format) {
+    this.format = format;
+    return this;
+  }
+
+  public String getFile() {
+    return file;
+  }
+
+  public VoidSettings setFile(String file) {
+    this.file = file;
+    return this;
+  }
+
+  public String getUriSpace() {
+    return uriSpace;
+  }
+
+  public VoidSettings setUriSpace(String uriSpace) {
+    this.uriSpace = uriSpace == null ? "" : uriSpace;
+    return this;
+  }
+
+  public boolean isUseGraphs() {
+    return useGraphs;
+  }
+
+  public VoidSettings setUseGraphs(boolean useGraphs) {
+    this.useGraphs = useGraphs;
+    return this;
+  }
+
+  /**
+   * @return true to also compute the statistics per named graph, as void:subset, only with use graphs
+   */
+  public boolean isGraphSubsets() {
+    return graphSubsets;
+  }
+
+  public VoidSettings setGraphSubsets(boolean graphSubsets) {
+    this.graphSubsets = graphSubsets;
+    return this;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public VoidSettings setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * @return number of rows fetched per query for queries returning a row per class or property, 0 when paging is off
+   */
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public VoidSettings setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+    return this;
+  }
+
+  /**
+   * @return number of classes or properties bound per 4.5 query, 0 to run the 4.5 queries grouped over the whole dataset
+   */
+  public int getFanOutSize() {
+    return fanOutSize;
+  }
+
+  public VoidSettings setFanOutSize(int fanOutSize) {
+    this.fanOutSize = fanOutSize;
+    return this;
+  }
+
+  /**
+   * @return dump files to compute the statistics from, empty when querying the SPARQL endpoint
+   */
+  public List<String> getInput() {
+    return input;
+  }
+
+  public VoidSettings setInput(List<String> input) {
+    this.input = input;
+    return this;
+  }
+
+  /**
+   * @return shard of the --input counted by this run, from 1 to the shard count
+   */
+  public int getShardIndex() {
+    return shardIndex;
+  }
+
+  /**
+   * @return number of shards the --input is split in, 0 when not sharded
+   */
+  public int getShardCount() {
+    return shardCount;
+  }
+
+  public VoidSettings setShard(int shardIndex, int shardCount) {
+    this.shardIndex = shardIndex;
+    this.shardCount = shardCount;
+    return this;
+  }
+
+  /**
+   * @return partial statistics files of all shards, merged instead of reading a dump or endpoint
+   */
+  public List<String> getMerge() {
+    return merge;
+  }
+
+  public VoidSettings setMerge(List<String> merge) {
+    this.merge = merge;
+    return this;
+  }
+
+  /**
+   * @return true if entities, distinct subjects and distinct objects are estimated with HyperLogLog sketches
+   */
+  public boolean isApproximate() {
+    return approximate;
+  }
+
+  public VoidSettings setApproximate(boolean approximate) {
+    this.approximate = approximate;
+    return this;
+  }
+
+  /**
+   * @return HyperLogLog precision, the sketches use 2^precision registers
+   */
+  public int getPrecision() {
+    return precision;
+  }
+
+  public VoidSettings setPrecision(int precision) {
+    this.precision = precision;
+    return this;
+  }
+
+  /**
+   * @return fraction of the values streamed from the endpoint into the sketches, selected on their hash, 1 for all values
+   */
+  public double getSketchSample() {
+    return sketchSample;
+  }
+
+  public VoidSettings setSketchSample(double sketchSample) {
+    this.sketchSample = sketchSample;
+    return this;
+  }
+
+  /**
+   * @return directory where query results are cached between runs, null when results are not cached
+   */
+  public String getCacheDirectory() {
+    return cacheDirectory;
+  }
+
+  public VoidSettings setCacheDirectory(String cacheDirectory) {
+    this.cacheDirectory = cacheDirectory;
+    return this;
+  }
+
+  public long getCacheTimeToLiveInHours() {
+    return cacheTimeToLiveInHours;
+  }
+
+  public VoidSettings setCacheTimeToLiveInHours(long cacheTimeToLiveInHours) {
+    this.cacheTimeToLiveInHours = cacheTimeToLiveInHours;
+    return this;
+  }
+
+  /**
+   * @return true to execute all queries again instead of using cached results
+   */
+  public boolean isRefresh() {
+    return refresh;
+  }
+
+  public VoidSettings setRefresh(boolean refresh) {
+    this.refresh = refresh;
+    return this;
+  }
+
+  /**
+   * @return true to print a table of the executed queries at the end of the run
+   */
+  public boolean isSummary() {
+    return summary;
+  }
+
+  public VoidSettings setSummary(boolean summary) {
+    this.summary = summary;
+    return this;
+  }
+
+  /**
+   * @return number of times a query failing with a timeout, connection error or server error is tried again
+   */
+  public int getRetries() {
+    return retries;
+  }
+
+  public VoidSettings setRetries(int retries) {
+    this.retries = retries;
+    return this;
+  }
+
+  /**
+   * @return upper bound of the delay before the first retry, it doubles with each next retry
+   */
+  public long getRetryDelayMillis() {
+    return retryDelayMillis;
+  }
+
+  public VoidSettings setRetryDelayMillis(long retryDelayMillis) {
+    this.retryDelayMillis = retryDelayMillis;
+    return this;
+  }
+
+  /**
+   * @return true to compute a statistic with cheaper queries when its query keeps failing
+   */
+  public boolean isFallback() {
+    return fallback;
+  }
+
+  public VoidSettings setFallback(boolean fallback) {
+    this.fallback = fallback;
+    return this;
+  }
+
+  /**
+   * @return true to compute the statistics of the dataset, the classes and the properties with a few queries scanning the data once
+   */
+  public boolean isCombined() {
+    return combined;
+  }
+
+  public VoidSettings setCombined(boolean combined) {
+    this.combined = combined;
+    return this;
+  }
+
+  /**
+   * @return fraction of the subjects, or objects, from which the counts are estimated, 0 when the statistics are counted exactly
+   */
+  public double getSample() {
+    return sample;
+  }
+
+  public VoidSettings setSample(double sample) {
+    this.sample = sample;
+    return this;
+  }
+
+  /**
+   * @return VoID file of an earlier run to update with the delta instead of computing all statistics, null for a full run
+   */
+  public String getPrevious() {
+    return previous;
+  }
+
+  public VoidSettings setPrevious(String previous) {
+    this.previous = previous;
+    return this;
+  }
+
+  /**
+   * @return RDF files with the triples added since the previous VoID
+   */
+  public List<String> getAdded() {
+    return added;
+  }
+
+  public VoidSettings setAdded(List<String> added) {
+    this.added = added;
+    return this;
+  }
+
+  /**
+   * @return RDF files with the triples removed since the previous VoID
+   */
+  public List<String> getRemoved() {
+    return removed;
+  }
+
+  public VoidSettings setRemoved(List<String> removed) {
+    this.removed = removed;
+    return this;
+  }
+
+  /**
+   * @return RDF Patch files with the changes since the previous VoID, applied after added and removed
+   */
+  public List<String> getPatch() {
+    return patch;
+  }
+
+  public VoidSettings setPatch(List<String> patch) {
+    this.patch = patch;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "\n" +
+            "\n" +
+            "Running with settings: " + "\n" +
+            "\n" +
+            "\t\t Dataset uri     : " + datasetUri + "\n" +
+            "\t\t Use graphs      : " + useGraphs + "\n" +
+            "\t\t Graph subsets   : " + graphSubsets + "\n" +
+            "\t\t Uri space       : " + uriSpace + "\n" +
+            "\t\t Sparql endpoint : " + sparqlEndpoint + "\n" +
+            "\t\t TDB2            : " + (tdb2 == null ? "no TDB2" : tdb2) + "\n" +
+            "\t\t Input           : " + String.join(", ", input) + "\n" +
+            "\t\t Shard           : " + (shardCount > 0 ? shardIndex + "/" + shardCount : "no shard") + "\n" +
+            "\t\t Merge           : " + String.join(", ", merge) + "\n" +
+            "\t\t Timeout         : " + timeoutInSeconds + "\n" +
+            "\t\t Parallelism     : " + parallelism + "\n" +
+            "\t\t Page size       : " + (pageSize > 0 ? String.valueOf(pageSize) : "no paging") + "\n" +
+            "\t\t Fan out size    : " + (fanOutSize > 0 ? String.valueOf(fanOutSize) : "no fan out") + "\n" +
+            "\t\t Combined        : " + combined + "\n" +
+            "\t\t Approximate     : " + (approximate ? "precision " + precision + ", sketch sample " + sketchSample : "false") + "\n" +
+            "\t\t Sample          : " + (sample > 0 ? String.valueOf(sample) : "no sample") + "\n" +
+            "\t\t Previous        : " + (previous == null ? "full run" : previous + ", added " + String.join(", ", added) +
+                                         ", removed " + String.join(", ", removed) + ", patch " + String.join(", ", patch)) + "\n" +
+            "\t\t Retries         : " + retries + ", " + retryDelayMillis + "ms" + (fallback ? ", fallback" : "") + "\n" +
+            "\t\t Cache           : " + (cacheDirectory == null ? "no cache" : cacheDirectory + ", " + cacheTimeToLiveInHours + "h" + (refresh ? ", refresh" : "")) + "\n" +
+            "\t\t File            : " + file + "\n" +
+            "\t\t Format          : " + format + "\n" +
+            "\n";
+  }
+}
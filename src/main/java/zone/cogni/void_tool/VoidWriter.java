@@ -0,0 +1,86 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes VoID to the output file as a stream of triples, without building a model first.
+ * Turtle is written in blocks per subject, N-Triples and RDF Thrift triple by triple, other formats go through a model.
+ * A file name ending in .gz is gzipped.
+ */
+public class VoidWriter {
+
+  private static final Map<String, RDFFormat> streamingFormats = new HashMap<>();
+
+  static {
+    streamingFormats.put("TURTLE", RDFFormat.TURTLE_BLOCKS);
+    streamingFormats.put("TTL", RDFFormat.TURTLE_BLOCKS);
+    streamingFormats.put("N3", RDFFormat.TURTLE_BLOCKS);
+    streamingFormats.put("N-TRIPLE", RDFFormat.NTRIPLES);
+    streamingFormats.put("N-TRIPLES", RDFFormat.NTRIPLES);
+    streamingFormats.put("NT", RDFFormat.NTRIPLES);
+    streamingFormats.put("RDF-THRIFT", RDFFormat.RDF_THRIFT);
+    streamingFormats.put("THRIFT", RDFFormat.RDF_THRIFT);
+  }
+
+  private final VoidSettings settings;
+
+  public VoidWriter(VoidSettings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * @return number of triples written
+   */
+  public long write(VoidModelBuilder voidModelBuilder) throws IOException {
+    try (OutputStream output = open(settings.getFile())) {
+      return write(voidModelBuilder, output);
+    }
+  }
+
+  /**
+   * @return number of triples written, the output is not closed
+   */
+  public long write(VoidModelBuilder voidModelBuilder, OutputStream output) {
+    RDFFormat format = streamingFormats.get(settings.getFormat().toUpperCase(Locale.ROOT));
+    if (format == null) {
+      Model model = voidModelBuilder.get();
+      model.write(output, settings.getFormat());
+      return model.size();
+    }
+
+    StreamRDFCounting stream = StreamRDFLib.count(StreamRDFWriter.getWriterStream(output, format));
+    stream.start();
+    voidModelBuilder.write(stream);
+    stream.finish();
+    return stream.countTriples();
+  }
+
+  /**
+   * @return media type of the output format
+   */
+  public String getContentType() {
+    RDFFormat format = streamingFormats.get(settings.getFormat().toUpperCase(Locale.ROOT));
+    Lang lang = format != null ? format.getLang() : RDFLanguages.nameToLang(settings.getFormat());
+    return lang == null ? "application/octet-stream" : lang.getContentType().getContentType();
+  }
+
+  private static OutputStream open(String file) throws IOException {
+    OutputStream output = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+    return file.endsWith(".gz") ? new GZIPOutputStream(output, 1 << 16) : output;
+  }
+}
@@ -0,0 +1,89 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.rdf.model.RDFNode;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * StAX parser for application/sparql-results+xml.
+ */
+public class XmlResultParser implements SparqlResultParser {
+
+  private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  @Override
+  public void parse(InputStream input, QueryResultHandler handler) throws IOException {
+    try {
+      XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(input);
+      try {
+        parse(reader, handler);
+      }
+      finally {
+        reader.close();
+      }
+    }
+    catch (XMLStreamException e) {
+      throw new IOException("Invalid SPARQL XML result: " + e.getMessage(), e);
+    }
+  }
+
+  private void parse(XMLStreamReader reader, QueryResultHandler handler) throws XMLStreamException {
+    Set<String> variables = new LinkedHashSet<>();
+    Map<String, RDFNode> row = null;
+    String binding = null;
+
+    while (reader.hasNext()) {
+      int event = reader.next();
+
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        if (reader.getLocalName().equals("head")) handler.variables(variables);
+        else if (reader.getLocalName().equals("result")) handler.row(row);
+        continue;
+      }
+
+      if (event != XMLStreamConstants.START_ELEMENT) continue;
+
+      switch (reader.getLocalName()) {
+        case "variable":
+          variables.add(reader.getAttributeValue(null, "name"));
+          break;
+        case "result":
+          row = new HashMap<>();
+          break;
+        case "binding":
+          binding = reader.getAttributeValue(null, "name");
+          break;
+        case "uri":
+          row.put(binding, ResultTerms.uri(reader.getElementText()));
+          break;
+        case "bnode":
+          row.put(binding, ResultTerms.blankNode(reader.getElementText()));
+          break;
+        case "literal":
+          String datatype = reader.getAttributeValue(null, "datatype");
+          String language = reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+          row.put(binding, ResultTerms.literal(reader.getElementText(), datatype, language));
+          break;
+        default:
+          break;
+      }
+    }
+  }
+}
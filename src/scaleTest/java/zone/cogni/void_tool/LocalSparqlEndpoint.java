@@ -0,0 +1,75 @@
+package zone.cogni.void_tool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.system.Txn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local SPARQL endpoint evaluating the queries with ARQ on an in-memory dataset, answering with XML results.
+ * A query that fails to parse or evaluate gets a 400 or 500, as a real endpoint would.
+ */
+public class LocalSparqlEndpoint implements AutoCloseable {
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newFixedThreadPool(8);
+  private final Dataset dataset;
+
+  public LocalSparqlEndpoint(Dataset dataset) throws IOException {
+    this.dataset = dataset;
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/sparql", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  public String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/sparql";
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String query = exchange.getRequestMethod().equals("POST") ? IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8)
+                                                              : URLDecoder.decode(exchange.getRequestURI().getRawQuery().substring("query=".length()), "UTF-8");
+    int status = 200;
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    try {
+      Txn.executeRead(dataset, () -> {
+        try (QueryExecution queryExecution = QueryExecutionFactory.create(query, dataset)) {
+          ResultSetFormatter.outputAsXML(response, queryExecution.execSelect());
+        }
+      });
+    }
+    catch (RuntimeException e) {
+      status = e instanceof QueryParseException ? 400 : 500;
+      response.reset();
+      response.write(String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    exchange.getResponseHeaders().set("Content-Type", status == 200 ? "application/sparql-results+xml" : "text/plain");
+    exchange.sendResponseHeaders(status, response.size());
+    try (OutputStream output = exchange.getResponseBody()) {
+      response.writeTo(output);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,204 @@
+package zone.cogni.void_tool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.VOID;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static io.vavr.API.$;
+import static io.vavr.API.Case;
+import static io.vavr.API.Match;
+
+/**
+ * Generates VoID for synthetic datasets of increasing size, served by a {@link LocalSparqlEndpoint} in this JVM,
+ * with the triples and with the quads queries. Each run is checked against the statistics counted while generating the data,
+ * and its wall clock time, heap and number of queries are recorded.
+ * <p>
+ * The heap is measured as the sum of the peaks of the heap memory pools above the heap in use before the run,
+ * which leaves out the dataset but includes the work of the endpoint.
+ * Exits with 1 when a statistic is wrong, so it can run before a release.
+ */
+@SuppressWarnings({"UseOfSystemOutOrSystemErr", "CallToSystemExit"})
+public class ScaleTest {
+
+  private static final String datasetUri = "http://example.org/synthetic/dataset";
+  private static final List<String> voidProperties = Arrays.asList("triples", "entities", "classes", "properties", "distinctSubjects", "distinctObjects");
+
+  private List<Long> steps = Arrays.asList(10_000L, 100_000L);
+  private int classes = 20;
+  private int predicates = 50;
+  private int graphs = 10;
+  private double skew = 1;
+  private long seed = 1;
+  private List<String> modes = Arrays.asList("triples", "quads");
+  private String results = "build/scaleTest/results.json";
+  private final List<String[]> voidArguments = new ArrayList<>();
+
+  public static void main(String[] args) throws IOException {
+    ScaleTest scaleTest = new ScaleTest();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      scaleTest.setArgument(args[i], args[i + 1]);
+    }
+
+    List<Map<String, Object>> results = scaleTest.run();
+    printSummary(results);
+    File resultsFile = new File(scaleTest.results);
+    if (resultsFile.getParentFile() != null) resultsFile.getParentFile().mkdirs();
+    new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultsFile, results);
+    System.out.println("Results written to " + resultsFile);
+
+    if (results.stream().anyMatch(result -> !(Boolean) result.get("correct"))) System.exit(1);
+  }
+
+  /**
+   * Options of the generated data, all other options are passed on to each VoID run, for example --pageSize 1000.
+   */
+  private void setArgument(String argument, String value) {
+    Match(argument).of(
+            Case($("--triples"), () -> steps = Arrays.stream(StringUtils.split(value, ',')).map(Long::parseLong).collect(Collectors.toList())),
+            Case($("--classes"), () -> classes = Integer.parseInt(value)),
+            Case($("--predicates"), () -> predicates = Integer.parseInt(value)),
+            Case($("--graphs"), () -> graphs = Integer.parseInt(value)),
+            Case($("--skew"), () -> skew = Double.parseDouble(value)),
+            Case($("--seed"), () -> seed = Long.parseLong(value)),
+            Case($("--modes"), () -> modes = Arrays.asList(StringUtils.split(value, ','))),
+            Case($("--results"), () -> results = value),
+            Case($(), () -> voidArguments.add(new String[]{argument, value}))
+    );
+  }
+
+  private List<Map<String, Object>> run() throws IOException {
+    List<Map<String, Object>> result = new ArrayList<>();
+    for (long step : steps) {
+      long start = System.nanoTime();
+      SyntheticData data = new SyntheticData(step, classes, predicates, graphs, skew, seed);
+      System.out.println("Generated " + data.getTriples() + " triples in " + (System.nanoTime() - start) / 1_000_000 + "ms.");
+      Map<String, Long> expected = data.getExpectedStatistics();
+
+      try (LocalSparqlEndpoint endpoint = new LocalSparqlEndpoint(data.getDataset())) {
+        for (String mode : modes) {
+          result.add(runStep(endpoint, data.getTriples(), mode, expected));
+        }
+      }
+    }
+    return result;
+  }
+
+  private Map<String, Object> runStep(LocalSparqlEndpoint endpoint, long triples, String mode, Map<String, Long> expected) throws IOException {
+    VoidSettings settings = new VoidSettings().setDatasetUri(datasetUri)
+                                              .setSparqlEndpoint(endpoint.getUrl())
+                                              .setUseGraphs(mode.equals("quads"));
+    voidArguments.forEach(argument -> Main.setArgument(settings, argument[0], argument[1]));
+
+    List<MemoryPoolMXBean> heapPools = getHeapPools();
+    System.gc();
+    long heapBefore = heapPools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+    long start = System.nanoTime();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    RunReport runReport;
+    try (SparqlEndpointClient client = new SparqlEndpointClient(settings.getParallelism())) {
+      VoidGenerator voidGenerator = new VoidGenerator(client, settings);
+      new VoidWriter(settings).write(voidGenerator.get(), output);
+      runReport = voidGenerator.getRunReport();
+    }
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+    Model model = ModelFactory.createDefaultModel();
+    model.read(new ByteArrayInputStream(output.toByteArray()), null, settings.getFormat());
+    List<String> differences = getDifferences(expected, getStatistics(model));
+    differences.stream().limit(10).forEach(difference -> System.out.println("  " + mode + " " + triples + ": " + difference));
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("triples", triples);
+    result.put("mode", mode);
+    result.put("millis", millis);
+    result.put("peakHeapMb", Math.max(0, peakHeap - heapBefore) / (1024 * 1024));
+    result.put("queries", runReport.getQueries().size());
+    result.put("failedQueries", runReport.getQueries().stream().filter(query -> !query.isSuccess()).count());
+    result.put("statistics", expected.size());
+    result.put("wrongStatistics", differences.size());
+    result.put("correct", differences.isEmpty());
+    return result;
+  }
+
+  private static List<MemoryPoolMXBean> getHeapPools() {
+    List<MemoryPoolMXBean> result = new ArrayList<>();
+    ManagementFactory.getMemoryPoolMXBeans().forEach(pool -> {
+      if (pool.getType() == MemoryType.HEAP) result.add(pool);
+    });
+    return result;
+  }
+
+  /**
+   * @return statistics of the VoID by "dataset", "class &lt;uri&gt;" or "property &lt;uri&gt;" and void property
+   */
+  private static Map<String, Long> getStatistics(Model model) {
+    Map<String, Long> result = new TreeMap<>();
+    Resource dataset = model.getResource(datasetUri);
+    putStatistics(result, "dataset", dataset);
+    model.listObjectsOfProperty(dataset, VOID.classPartition).forEachRemaining(
+            partition -> putStatistics(result, "class <" + getUri(partition, VOID._class) + ">", partition.asResource()));
+    model.listObjectsOfProperty(dataset, VOID.propertyPartition).forEachRemaining(
+            partition -> putStatistics(result, "property <" + getUri(partition, VOID.property) + ">", partition.asResource()));
+    return result;
+  }
+
+  private static String getUri(RDFNode partition, Property property) {
+    return partition.asResource().getPropertyResourceValue(property).getURI();
+  }
+
+  private static void putStatistics(Map<String, Long> statistics, String key, Resource resource) {
+    voidProperties.forEach(voidProperty -> {
+      Statement statement = resource.getProperty(resource.getModel().createProperty(VOID.NS, voidProperty));
+      if (statement != null) statistics.put(key + " " + voidProperty, statement.getLong());
+    });
+  }
+
+  private static List<String> getDifferences(Map<String, Long> expected, Map<String, Long> actual) {
+    Set<String> keys = new TreeSet<>(expected.keySet());
+    keys.addAll(actual.keySet());
+
+    List<String> result = new ArrayList<>();
+    keys.forEach(key -> {
+      if (!expected.containsKey(key) || !expected.get(key).equals(actual.get(key))) {
+        result.add(key + " is " + actual.get(key) + ", expected " + expected.get(key));
+      }
+    });
+    return result;
+  }
+
+  private static void printSummary(List<Map<String, Object>> results) {
+    System.out.println();
+    System.out.println(String.format("%12s %-8s %10s %12s %8s %8s %s", "triples", "mode", "millis", "peak heap MB", "queries", "failed", "statistics"));
+    results.forEach(result -> System.out.println(String.format("%12d %-8s %10d %12d %8d %8d %s",
+                                                               result.get("triples"), result.get("mode"), result.get("millis"),
+                                                               result.get("peakHeapMb"), result.get("queries"), result.get("failedQueries"),
+                                                               (Boolean) result.get("correct") ? "correct" : result.get("wrongStatistics") + " wrong")));
+  }
+}
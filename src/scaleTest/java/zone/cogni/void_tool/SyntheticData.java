@@ -0,0 +1,258 @@
+package zone.cogni.void_tool;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates a dataset of about the requested number of triples, with classes, properties, linked resources and named graphs
+ * chosen from Zipf distributions, so a few classes and properties have most of the triples and a few resources most of the links.
+ * All triples of a resource are in one named graph, which makes the quads statistics equal to the triples ones.
+ * The dataset has them both in the default graph, for the triples queries, and in the named graphs, for the quads queries.
+ * <p>
+ * The expected statistics are counted while generating, with the definitions of the query templates but without SPARQL.
+ */
+public class SyntheticData {
+
+  private static final String base = "http://example.org/synthetic/";
+
+  private final int classes;
+  private final int predicates;
+  private final Random random;
+  private final Zipf classDistribution;
+  private final Zipf predicateDistribution;
+  private final Zipf graphDistribution;
+  private final Zipf linkDistribution;
+  private final int resources;
+  private final Node blankClass = NodeFactory.createBlankNode();
+
+  private final Dataset dataset = DatasetFactory.createTxnMem();
+  private long triples;
+
+  // objects are numbered: resources first, then the classes
+  private final Set<Integer> usedPredicates = new LinkedHashSet<>();
+  private final BitSet usedClasses = new BitSet();
+  private final BitSet subjects = new BitSet();
+  private final BitSet entities = new BitSet();
+  private final BitSet objects = new BitSet();
+  private final Partition[] classPartitions;
+  private final Partition[] propertyPartitions;
+
+  /**
+   * @param skew exponent of the Zipf distributions, 0 for uniform
+   */
+  public SyntheticData(long targetTriples, int classes, int predicates, int graphs, double skew, long seed) {
+    this.classes = classes;
+    this.predicates = predicates;
+    this.random = new Random(seed);
+    // about 6 triples per resource
+    this.resources = (int) Math.max(1, targetTriples / 6);
+    this.classDistribution = new Zipf(classes, skew, random);
+    this.predicateDistribution = new Zipf(predicates, skew, random);
+    this.graphDistribution = new Zipf(graphs, skew, random);
+    this.linkDistribution = new Zipf(resources, skew, random);
+    this.classPartitions = new Partition[classes + 1];
+    this.propertyPartitions = new Partition[predicates + 1];
+
+    DatasetGraph datasetGraph = dataset.asDatasetGraph();
+    Txn.executeWrite(dataset, () -> {
+      for (int resource = 0; triples < targetTriples; resource++) {
+        addResource(datasetGraph, resource);
+      }
+    });
+  }
+
+  public Dataset getDataset() {
+    return dataset;
+  }
+
+  public long getTriples() {
+    return triples;
+  }
+
+  private void addResource(DatasetGraph datasetGraph, int resource) {
+    // 10% of the resources have no type, 20% of the others two; 2% also have the blank node class, index `classes`
+    Set<Integer> types = new LinkedHashSet<>();
+    if (random.nextInt(10) > 0) {
+      types.add(classDistribution.next());
+      if (random.nextInt(5) == 0) types.add(classDistribution.next());
+    }
+    if (random.nextInt(50) == 0) types.add(classes);
+
+    // predicate and object per value, object -1 for a literal; rdf:type is predicate index `predicates`
+    Set<List<Integer>> values = new LinkedHashSet<>();
+    types.forEach(type -> values.add(Arrays.asList(predicates, resources + type)));
+    int valueCount = 1 + random.nextInt(8);
+    for (int value = 0; value < valueCount; value++) {
+      values.add(Arrays.asList(predicateDistribution.next(), random.nextBoolean() ? -1 : linkDistribution.next()));
+    }
+
+    Node subject = getResource(resource);
+    Node graph = NodeFactory.createURI(base + "graph/" + graphDistribution.next());
+    int literal = 0;
+    for (List<Integer> value : values) {
+      Node object = value.get(1) < 0 ? NodeFactory.createLiteral("value " + resource + "-" + literal++) : getObject(value.get(1));
+      Triple triple = Triple.create(subject, getPredicate(value.get(0)), object);
+      datasetGraph.getDefaultGraph().add(triple);
+      datasetGraph.add(new Quad(graph, triple));
+    }
+    triples += values.size();
+
+    count(resource, types, values);
+  }
+
+  private void count(int resource, Set<Integer> types, Set<List<Integer>> values) {
+    BitSet resourceObjects = new BitSet();
+    Map<Integer, Partition> resourceProperties = new TreeMap<>();
+    for (List<Integer> value : values) {
+      Partition property = resourceProperties.computeIfAbsent(value.get(0), key -> new Partition());
+      property.triples++;
+      if (value.get(1) >= 0) {
+        property.objects.set(value.get(1));
+        resourceObjects.set(value.get(1));
+      }
+    }
+
+    subjects.set(resource);
+    if (!types.isEmpty()) entities.set(resource);
+    objects.or(resourceObjects);
+    usedPredicates.addAll(resourceProperties.keySet());
+    types.forEach(usedClasses::set);
+
+    for (int type : types) {
+      Partition partition = getPartition(classPartitions, type);
+      partition.triples += values.size();
+      partition.subjects.set(resource);
+      partition.objects.or(resourceObjects);
+      resourceProperties.keySet().forEach(partition.properties::set);
+    }
+
+    resourceProperties.forEach((predicate, resourceProperty) -> {
+      Partition partition = getPartition(propertyPartitions, predicate);
+      partition.triples += resourceProperty.triples;
+      partition.subjects.set(resource);
+      partition.objects.or(resourceProperty.objects);
+      if (!types.isEmpty()) partition.entities.set(resource);
+      types.forEach(partition.classes::set);
+    });
+  }
+
+  private static Partition getPartition(Partition[] partitions, int index) {
+    if (partitions[index] == null) partitions[index] = new Partition();
+    return partitions[index];
+  }
+
+  /**
+   * @return expected statistics by "dataset", "class &lt;uri&gt;" or "property &lt;uri&gt;" and void property, without zero counts
+   * as the queries have no row for those
+   */
+  public Map<String, Long> getExpectedStatistics() {
+    Map<String, Long> result = new TreeMap<>();
+    put(result, "dataset", "triples", triples);
+    put(result, "dataset", "entities", entities.cardinality());
+    put(result, "dataset", "classes", usedClasses.cardinality());
+    put(result, "dataset", "properties", usedPredicates.size());
+    put(result, "dataset", "distinctSubjects", subjects.cardinality());
+    put(result, "dataset", "distinctObjects", objects.cardinality());
+
+    // the blank node class counts in the dataset and property statistics, but has no partition
+    for (int type = 0; type < classes; type++) {
+      Partition partition = classPartitions[type];
+      if (partition == null) continue;
+
+      String key = "class <" + getClass(type).getURI() + ">";
+      put(result, key, "triples", partition.triples);
+      put(result, key, "entities", partition.subjects.cardinality());
+      put(result, key, "classes", 1);
+      put(result, key, "properties", partition.properties.cardinality());
+      put(result, key, "distinctSubjects", partition.subjects.cardinality());
+      put(result, key, "distinctObjects", partition.objects.cardinality());
+    }
+
+    for (int predicate = 0; predicate <= predicates; predicate++) {
+      Partition partition = propertyPartitions[predicate];
+      if (partition == null) continue;
+
+      String key = "property <" + getPredicate(predicate).getURI() + ">";
+      put(result, key, "triples", partition.triples);
+      put(result, key, "entities", partition.entities.cardinality());
+      put(result, key, "classes", partition.classes.cardinality());
+      put(result, key, "properties", 1);
+      put(result, key, "distinctSubjects", partition.subjects.cardinality());
+      put(result, key, "distinctObjects", partition.objects.cardinality());
+    }
+    return result;
+  }
+
+  private static void put(Map<String, Long> statistics, String key, String voidProperty, long value) {
+    if (value > 0) statistics.put(key + " " + voidProperty, value);
+  }
+
+  private Node getObject(int object) {
+    return object < resources ? getResource(object) : getClass(object - resources);
+  }
+
+  private static Node getResource(int resource) {
+    return NodeFactory.createURI(base + "resource/" + resource);
+  }
+
+  private Node getClass(int type) {
+    return type == classes ? blankClass : NodeFactory.createURI(base + "class/" + type);
+  }
+
+  private Node getPredicate(int predicate) {
+    return predicate == predicates ? RDF.type.asNode() : NodeFactory.createURI(base + "property/" + predicate);
+  }
+
+  private static class Partition {
+
+    private long triples;
+    private final BitSet subjects = new BitSet();
+    private final BitSet entities = new BitSet();
+    private final BitSet objects = new BitSet();
+    private final BitSet properties = new BitSet();
+    private final BitSet classes = new BitSet();
+  }
+
+  /**
+   * Draws 0 to n - 1, value k with a probability proportional to 1 / (k + 1)^exponent.
+   */
+  private static class Zipf {
+
+    private final double[] cumulative;
+    private final Random random;
+
+    private Zipf(int n, double exponent, Random random) {
+      this.random = random;
+      cumulative = new double[n];
+      double sum = 0;
+      for (int k = 0; k < n; k++) {
+        sum += 1 / Math.pow(k + 1, exponent);
+        cumulative[k] = sum;
+      }
+      for (int k = 0; k < n; k++) {
+        cumulative[k] /= sum;
+      }
+    }
+
+    private int next() {
+      int index = Arrays.binarySearch(cumulative, random.nextDouble());
+      return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+    }
+  }
+}